@@ -9,6 +9,8 @@ import {
   unmarkHabitOn,
   getMonthlyStats,
   getRangeStats,
+  getHabitLogsBatch,
+  subscribeToHabitEvents,
   type HabitDto,
   type CreateHabitRequest,
 } from "./lib/api";
@@ -79,6 +81,9 @@ function HabitsView() {
     load();
   }, []);
 
+  // Streaks and the habit list change with every event, including those from other tabs
+  useEffect(() => subscribeToHabitEvents(() => load()), []);
+
   const submit = async (e: React.FormEvent) => {
     e.preventDefault();
     try {
@@ -154,6 +159,9 @@ function HabitsView() {
                   <strong>{h.name}</strong>
                   <div className="muted">{h.description}</div>
                   <div className="muted">Frequency: {h.frequency}</div>
+                  <div className="muted">
+                    Streak: {h.currentStreak} (best {h.longestStreak})
+                  </div>
                 </div>
                 <div className="row gap">
                   <button onClick={() => onMark(h.id)}>Mark Today</button>
@@ -201,6 +209,15 @@ function StatsView() {
     loadMonthly();
   }, []);
 
+  useEffect(
+    () =>
+      subscribeToHabitEvents((event) => {
+        const prefix = `${year}-${String(month).padStart(2, "0")}`;
+        if (!event.date || event.date.startsWith(prefix)) loadMonthly();
+      }),
+    [year, month]
+  );
+
   return (
     <main>
       <section className="card">
@@ -286,12 +303,10 @@ function CalendarView() {
     const endIso = `${year}-${String(month).padStart(2, "0")}-${String(
       daysInMonth(year, month)
     ).padStart(2, "0")}`;
+    const datesByHabit = await getHabitLogsBatch(startIso, endIso);
     const byHabit: Record<number, Set<string>> = {};
     for (const h of hs) {
-      const logs = (await fetch(
-        `/api/habits/${h.id}/logs?start=${startIso}&end=${endIso}`
-      ).then((r) => r.json())) as { id: number; date: string }[];
-      byHabit[h.id] = new Set(logs.map((l) => l.date));
+      byHabit[h.id] = new Set(datesByHabit[h.id] ?? []);
     }
     setMarked(byHabit);
   };
@@ -300,6 +315,26 @@ function CalendarView() {
     load();
   }, [year, month]);
 
+  // Marks and unmarks are applied as they arrive; other changes reload the month
+  useEffect(
+    () =>
+      subscribeToHabitEvents((event) => {
+        if (event.type !== "marked" && event.type !== "unmarked") {
+          load();
+          return;
+        }
+        const { habitId, date } = event;
+        if (habitId === undefined || !date) return;
+        setMarked((prev) => {
+          const set = new Set(prev[habitId] ?? new Set<string>());
+          if (event.type === "marked") set.add(date);
+          else set.delete(date);
+          return { ...prev, [habitId]: set };
+        });
+      }),
+    [year, month]
+  );
+
   const toggle = async (habitId: number, dateIso: string) => {
     const set = new Set(marked[habitId] ?? new Set<string>());
     const isMarked = set.has(dateIso);
@@ -5,6 +5,8 @@ export interface HabitDto {
   name: string;
   description: string;
   frequency: "DAILY" | "WEEKLY" | "MONTHLY";
+  currentStreak: number;
+  longestStreak: number;
 }
 
 export interface CreateHabitRequest {
@@ -16,10 +18,33 @@ export interface CreateHabitRequest {
 const jsonHeaders = { "Content-Type": "application/json" } as const;
 const API_BASE = import.meta.env.VITE_API_BASE || "";
 
+const PAGE_SIZE = 500;
+
+// Follows the X-Next-Cursor header of a keyset-paginated endpoint until the last page
+async function fetchAllPages<T>(
+  url: string,
+  params: Record<string, string>,
+  error: string
+): Promise<T[]> {
+  const items: T[] = [];
+  let after: string | null = null;
+  do {
+    const query = new URLSearchParams({ ...params, limit: String(PAGE_SIZE) });
+    if (after) query.set("after", after);
+    const res = await fetch(`${url}?${query}`);
+    if (!res.ok) throw new Error(error);
+    items.push(...((await res.json()) as T[]));
+    after = res.headers.get("X-Next-Cursor");
+  } while (after);
+  return items;
+}
+
 export async function getHabits(): Promise<HabitDto[]> {
-  const res = await fetch(`${API_BASE}/api/habits`);
-  if (!res.ok) throw new Error("Failed to fetch habits");
-  return res.json();
+  return fetchAllPages<HabitDto>(
+    `${API_BASE}/api/habits`,
+    {},
+    "Failed to fetch habits"
+  );
 }
 
 export async function createHabit(
@@ -77,7 +102,16 @@ export async function getRangeStats(
   start: string,
   end: string
 ): Promise<
-  Record<string, { completions: number; possible: number; rate: number }>
+  Record<
+    string,
+    {
+      completions: number;
+      possible: number;
+      rate: number;
+      currentStreak: number;
+      longestStreak: number;
+    }
+  >
 > {
   const res = await fetch(
     `${API_BASE}/api/habits/stats/range?start=${encodeURIComponent(
@@ -98,11 +132,48 @@ export async function getHabitLogs(
   start: string,
   end: string
 ): Promise<HabitLogDto[]> {
-  const res = await fetch(
-    `${API_BASE}/api/habits/${id}/logs?start=${encodeURIComponent(
-      start
-    )}&end=${encodeURIComponent(end)}`
+  return fetchAllPages<HabitLogDto>(
+    `${API_BASE}/api/habits/${id}/logs`,
+    { start, end },
+    "Failed to fetch habit logs"
   );
+}
+
+export async function getHabitLogsBatch(
+  start: string,
+  end: string,
+  ids?: number[]
+): Promise<Record<string, string[]>> {
+  const params = new URLSearchParams({ start, end });
+  if (ids && ids.length > 0) params.set("ids", ids.join(","));
+  const res = await fetch(`${API_BASE}/api/habits/logs?${params}`);
   if (!res.ok) throw new Error("Failed to fetch habit logs");
   return res.json();
 }
+
+export interface HabitChangeEvent {
+  type: "marked" | "unmarked" | "habit_added" | "habit_deleted" | "habits_changed";
+  habitId?: number;
+  date?: string;
+  periodStart?: string;
+  monthCompletions?: number;
+  habitIds?: number[];
+}
+
+const HABIT_EVENT_TYPES: HabitChangeEvent["type"][] = [
+  "marked",
+  "unmarked",
+  "habit_added",
+  "habit_deleted",
+  "habits_changed",
+];
+
+// Live changes from the server; EventSource reconnects on its own. Returns a function that closes the stream.
+export function subscribeToHabitEvents(
+  onEvent: (event: HabitChangeEvent) => void
+): () => void {
+  const source = new EventSource(`${API_BASE}/api/habits/events`);
+  const listener = (e: MessageEvent) => onEvent(JSON.parse(e.data));
+  HABIT_EVENT_TYPES.forEach((type) => source.addEventListener(type, listener));
+  return () => source.close();
+}
@@ -0,0 +1,107 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Closed-loop load generator for the stats and mark endpoints. Each simulated
+ * client sends its next request as soon as the previous one completes. Only
+ * needs a JDK:
+ *
+ *   java scripts/LoadTest.java http://localhost:8080 &lt;habitIds&gt; [clients] [seconds] [warmupSeconds]
+ *
+ * Marks go to a random habit out of the comma-separated ids, so several habits
+ * are needed to avoid measuring only the per-habit write lock. Prints throughput and latency percentiles per endpoint, measured after warmup.
+ */
+public class LoadTest {
+
+    private record Sample(int endpoint, long nanos, boolean ok) {}
+
+    private static final String[] ENDPOINTS = {"GET /stats/range", "POST /{id}/markOn"};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: LoadTest <baseUrl> <habitIds> [clients] [seconds] [warmupSeconds]");
+            System.exit(1);
+        }
+        String baseUrl = args[0] + "/api/habits";
+        long[] habitIds = Arrays.stream(args[1].split(",")).mapToLong(Long::parseLong).toArray();
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 400;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        int warmupSeconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        LocalDate today = LocalDate.now();
+        HttpRequest stats = HttpRequest.newBuilder(URI.create(baseUrl + "/stats/range?start="
+                + today.minusDays(100) + "&end=" + today)).timeout(Duration.ofSeconds(30)).build();
+
+        AtomicBoolean recording = new AtomicBoolean(false);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<List<Sample>> perClient = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                List<Sample> samples = new ArrayList<>();
+                perClient.add(samples);
+                executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (running.get()) {
+                        int endpoint = random.nextInt(ENDPOINTS.length);
+                        HttpRequest request = endpoint == 0 ? stats : HttpRequest.newBuilder(URI.create(
+                                        baseUrl + "/" + habitIds[random.nextInt(habitIds.length)] + "/markOn?date=" + today.minusDays(random.nextInt(3650))))
+                                .timeout(Duration.ofSeconds(30))
+                                .POST(HttpRequest.BodyPublishers.noBody())
+                                .build();
+                        long start = System.nanoTime();
+                        boolean ok;
+                        try {
+                            ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() < 400;
+                        } catch (Exception e) {
+                            ok = false;
+                        }
+                        if (recording.get()) {
+                            samples.add(new Sample(endpoint, System.nanoTime() - start, ok));
+                        }
+                    }
+                    return null;
+                });
+            }
+            Thread.sleep(warmupSeconds * 1000L);
+            recording.set(true);
+            Thread.sleep(seconds * 1000L);
+            recording.set(false);
+            running.set(false);
+        }
+
+        System.out.printf("%-20s %10s %8s %10s %10s %10s%n", "endpoint", "req/s", "errors", "p50 ms", "p99 ms", "max ms");
+        for (int endpoint = 0; endpoint < ENDPOINTS.length; endpoint++) {
+            int e = endpoint;
+            long[] latencies = perClient.stream().flatMap(List::stream)
+                    .filter(s -> s.endpoint() == e).mapToLong(Sample::nanos).sorted().toArray();
+            long errors = perClient.stream().flatMap(List::stream)
+                    .filter(s -> s.endpoint() == e && !s.ok()).count();
+            System.out.printf("%-20s %10.1f %8d %10.1f %10.1f %10.1f%n", ENDPOINTS[endpoint],
+                    latencies.length / (double) seconds, errors,
+                    percentile(latencies, 0.50), percentile(latencies, 0.99),
+                    latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6);
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+}
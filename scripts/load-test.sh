@@ -0,0 +1,39 @@
+#!/bin/sh
+# Compares platform-thread and virtual-thread request execution on the stats and
+# mark endpoints. Needs JDK 21 and the PostgreSQL database from application.properties.
+#
+#   scripts/load-test.sh [clients] [seconds] [warmupSeconds]
+set -e
+cd "$(dirname "$0")/.."
+CLIENTS=${1:-400}
+SECONDS_PER_RUN=${2:-30}
+WARMUP=${3:-10}
+BASE_URL=http://localhost:8080
+
+./mvnw -q -DskipTests clean package
+JAR=$(ls target/habittracker-*.jar | grep -v original | head -1)
+
+run() {
+    mode=$1
+    echo "== $mode threads"
+    java -jar "$JAR" --spring.threads.virtual.enabled=$([ "$mode" = virtual ] && echo true || echo false) \
+        --app.rate-limit.enabled=false --logging.level.root=WARN >/tmp/habit-load-test-$mode.log 2>&1 &
+    pid=$!
+    until curl -sf $BASE_URL/actuator/health >/dev/null; do sleep 1; done
+    habits=""
+    for i in $(seq 1 20); do
+        id=$(curl -sf -X POST $BASE_URL/api/habits -H 'Content-Type: application/json' \
+            -d "{\"name\":\"load-test-$i\",\"description\":\"load test\",\"frequency\":\"daily\"}" \
+            | sed 's/.*"id":\([0-9]*\).*/\1/')
+        habits="$habits${habits:+,}$id"
+    done
+    java scripts/LoadTest.java $BASE_URL "$habits" "$CLIENTS" "$SECONDS_PER_RUN" "$WARMUP"
+    for id in $(echo "$habits" | tr ',' ' '); do
+        curl -sf -X DELETE $BASE_URL/api/habits/$id >/dev/null
+    done
+    kill $pid
+    wait $pid 2>/dev/null || true
+}
+
+run platform
+run virtual
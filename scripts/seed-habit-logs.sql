@@ -0,0 +1,49 @@
+-- Seeds a large synthetic dataset for checking query plans and partition
+-- pruning against a local PostgreSQL. Run it after the application has created
+-- the schema:
+--
+--   psql -d habit_tracker -v habits=2000 -v years=6 -f scripts/seed-habit-logs.sql
+--
+-- Seeded habits are named seed-<n>; remove them with
+--   delete from habit_monthly_rollup where habit_id in (select id from habits where name like 'seed-%');
+--   delete from habit_logs where habit_id in (select id from habits where name like 'seed-%');
+--   delete from habits where name like 'seed-%';
+-- and restart the application so its in-memory indexes are rebuilt.
+
+\if :{?habits}
+\else
+\set habits 1000
+\endif
+\if :{?years}
+\else
+\set years 5
+\endif
+
+insert into habits (name, description, frequency)
+select 'seed-' || i, 'Seeded habit', (array ['DAILY', 'WEEKLY', 'MONTHLY'])[1 + i % 3]
+from generate_series(1, :habits) as i;
+
+-- Roughly 60% of days completed, keeping the first log of each period
+insert into habit_logs (habit_id, date, period_key)
+select h.id, g.day::date,
+       case h.frequency
+           when 'WEEKLY' then date_trunc('week', g.day)::date
+           when 'MONTHLY' then date_trunc('month', g.day)::date
+           else g.day::date end
+from habits h
+cross join generate_series(current_date - make_interval(years => :years), current_date, interval '1 day') as g(day)
+where h.name like 'seed-%'
+  and random() < 0.6
+order by h.id, g.day
+on conflict (habit_id, period_key) do nothing;
+
+delete from habit_monthly_rollup where habit_id in (select id from habits where name like 'seed-%');
+insert into habit_monthly_rollup (habit_id, year, month, completions)
+select habit_id, extract(year from date)::int, extract(month from date)::int, count(*)
+from habit_logs
+where habit_id in (select id from habits where name like 'seed-%')
+group by 1, 2, 3;
+
+analyze habits;
+analyze habit_logs;
+analyze habit_monthly_rollup;
@@ -0,0 +1,61 @@
+package com.tracker.habittracker.benchmark;
+
+import com.tracker.habittracker.model.Frequency;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Period bucketing done for every mark, unmark, streak rebuild and stats row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(FrequencyBenchmark.DATES)
+public class FrequencyBenchmark {
+
+    static final int DATES = 1024;
+
+    @Param({"DAILY", "WEEKLY", "MONTHLY"})
+    private Frequency frequency;
+
+    private final LocalDate[] dates = new LocalDate[DATES];
+    private final LocalDate[] ends = new LocalDate[DATES];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        LocalDate base = LocalDate.of(2015, 1, 1);
+        for (int i = 0; i < DATES; i++) {
+            dates[i] = base.plusDays(random.nextInt(3650));
+            ends[i] = dates[i].plusDays(random.nextInt(400));
+        }
+    }
+
+    @Benchmark
+    public void periodStart(Blackhole blackhole) {
+        for (LocalDate date : dates) {
+            blackhole.consume(frequency.periodStart(date));
+        }
+    }
+
+    @Benchmark
+    public void periodIndex(Blackhole blackhole) {
+        for (LocalDate date : dates) {
+            blackhole.consume(frequency.periodIndex(date));
+        }
+    }
+
+    @Benchmark
+    public void periodsBetween(Blackhole blackhole) {
+        for (int i = 0; i < DATES; i++) {
+            blackhole.consume(frequency.periodsBetween(dates[i], ends[i]));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.tracker.habittracker.benchmark;
+
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.repository.HabitCompletionCount;
+import com.tracker.habittracker.repository.HabitCompletionTotal;
+import com.tracker.habittracker.repository.HabitLogRepository;
+import com.tracker.habittracker.repository.HabitMonthlyRollupRepository;
+import com.tracker.habittracker.service.HabitStatsService;
+import com.tracker.habittracker.service.StreakService;
+import com.tracker.habittracker.service.WriteBehindBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * The in-memory part of range stats: merging partial-month and rollup totals
+ * and the possible/rate math per habit. Repositories are stubbed so no query
+ * time is included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RangeStatsBenchmark {
+
+    private record Count(Long habitId, String name, Frequency frequency, long completions)
+            implements HabitCompletionCount {
+        public Long getHabitId() { return habitId; }
+        public String getName() { return name; }
+        public Frequency getFrequency() { return frequency; }
+        public long getCompletions() { return completions; }
+    }
+
+    private record Total(Long habitId, long completions) implements HabitCompletionTotal {
+        public Long getHabitId() { return habitId; }
+        public long getCompletions() { return completions; }
+    }
+
+    @Param({"100", "10000"})
+    private int habits;
+
+    private HabitStatsService statsService;
+
+    private final LocalDate start = LocalDate.of(2025, 1, 15);
+    private final LocalDate end = LocalDate.of(2025, 6, 10);
+
+    @Setup
+    public void setUp() {
+        List<HabitCompletionCount> counts = new ArrayList<>(habits);
+        List<HabitCompletionTotal> totals = new ArrayList<>(habits);
+        for (long id = 1; id <= habits; id++) {
+            counts.add(new Count(id, "habit-" + id, Frequency.values()[(int) (id % 3)], 10));
+            totals.add(new Total(id, 5));
+        }
+        HabitLogRepository habitLogRepository = mock(HabitLogRepository.class);
+        HabitMonthlyRollupRepository rollupRepository = mock(HabitMonthlyRollupRepository.class);
+        StreakService streakService = mock(StreakService.class);
+        when(habitLogRepository.countCompletionsBetween(any(), any())).thenReturn(counts);
+        when(habitLogRepository.sumCompletionsBetween(any(), any())).thenReturn(totals);
+        when(rollupRepository.sumCompletionsBetweenMonths(anyInt(), anyInt(), anyInt(), anyInt())).thenReturn(totals);
+        when(streakService.getStreaks(anyMap())).thenReturn(Map.of());
+        statsService = new HabitStatsService(habitLogRepository, rollupRepository, streakService,
+                mock(WriteBehindBuffer.class), mock(PlatformTransactionManager.class));
+    }
+
+    @Benchmark
+    public Map<String, Object> rangeStats() {
+        return statsService.getRangeStats(start, end);
+    }
+}
@@ -0,0 +1,66 @@
+package com.tracker.habittracker.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.tracker.habittracker.dto.HabitLogResponse;
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.model.Habit;
+import com.tracker.habittracker.model.HabitLog;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of the log lists returned by GET /{id}/logs, with a mapper
+ * configured like the application's. {@code habitLogs} writes entities with
+ * their nested habit, as the endpoint once did; {@code habitLogResponses}
+ * writes the projected responses it returns now. Run with {@code -prof gc}
+ * to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"100", "10000"})
+    private int logs;
+
+    private ObjectMapper objectMapper;
+    private List<HabitLog> habitLogs;
+    private List<HabitLogResponse> habitLogResponses;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        Habit habit = new Habit(1L, "Coding", "Practice coding daily", Frequency.DAILY);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        habitLogs = new ArrayList<>(logs);
+        habitLogResponses = new ArrayList<>(logs);
+        for (int i = 0; i < logs; i++) {
+            HabitLog log = new HabitLog(habit, start.plusDays(i));
+            log.setId((long) i + 1);
+            habitLogs.add(log);
+            habitLogResponses.add(new HabitLogResponse(log.getId(), log.getDate()));
+        }
+    }
+
+    @Benchmark
+    public byte[] habitLogs() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(habitLogs);
+    }
+
+    @Benchmark
+    public byte[] habitLogResponses() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(habitLogResponses);
+    }
+}
@@ -0,0 +1,158 @@
+package com.tracker.habittracker.benchmark;
+
+import com.tracker.habittracker.HabittrackerApplication;
+import com.tracker.habittracker.dto.CompletionCalendar;
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.model.Habit;
+import com.tracker.habittracker.service.HabitLogService;
+import com.tracker.habittracker.service.HabitService;
+import com.tracker.habittracker.service.HabitStatsService;
+import com.tracker.habittracker.service.StreakService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths through the real services and repositories against an in-memory
+ * H2 database in PostgreSQL mode, seeded with {@code habits} habits of mixed
+ * frequencies and up to {@code periodsPerHabit} completed periods each, e.g.
+ * {@code -Djmh.args="ServiceBenchmark -p habits=1000 -p periodsPerHabit=730"}.
+ * Write paths rely on PostgreSQL-only SQL and are not covered here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    @Param({"100"})
+    private int habits;
+
+    @Param({"365"})
+    private int periodsPerHabit;
+
+    private ConfigurableApplicationContext context;
+    private HabitService habitService;
+    private HabitLogService habitLogService;
+    private HabitStatsService habitStatsService;
+    private StreakService streakService;
+    private Map<Long, Frequency> frequencies;
+
+    private final LocalDate today = LocalDate.now();
+    private final LocalDate yearStart = today.minusYears(1).plusDays(1);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Passed as command line arguments so they take precedence over application.properties
+        context = new SpringApplicationBuilder(HabittrackerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:habits-benchmark;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;NON_KEYWORDS=YEAR,MONTH",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.flyway.enabled=false",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.devtools.restart.enabled=false",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN");
+        seed(context.getBean(JdbcTemplate.class));
+        habitService = context.getBean(HabitService.class);
+        habitLogService = context.getBean(HabitLogService.class);
+        habitStatsService = context.getBean(HabitStatsService.class);
+        streakService = context.getBean(StreakService.class);
+        frequencies = new HashMap<>();
+        habitService.getAllHabits().forEach(habit -> frequencies.put(habit.getId(), habit.getFrequency()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    private void seed(JdbcTemplate jdbcTemplate) {
+        Random random = new Random(42);
+        List<Object[]> habitRows = new ArrayList<>();
+        for (int i = 0; i < habits; i++) {
+            habitRows.add(new Object[]{"habit-" + i, "benchmark habit", Frequency.values()[i % 3].name()});
+        }
+        jdbcTemplate.batchUpdate("insert into habits (name, description, frequency) values (?, ?, ?)", habitRows);
+
+        List<Object[]> logRows = new ArrayList<>();
+        Map<String, Long> rollup = new HashMap<>();
+        for (Habit habit : jdbcTemplate.query("select id, name, description, frequency from habits",
+                (rs, i) -> new Habit(rs.getLong(1), rs.getString(2), rs.getString(3),
+                        Frequency.valueOf(rs.getString(4))))) {
+            LocalDate period = habit.getFrequency().periodStart(today);
+            for (int k = 0; k < periodsPerHabit; k++) {
+                // Roughly four in five periods completed
+                if (random.nextInt(5) != 0) {
+                    LocalDate date = period.isAfter(today) ? today : period;
+                    logRows.add(new Object[]{habit.getId(), Date.valueOf(date), Date.valueOf(period)});
+                    rollup.merge(habit.getId() + ":" + date.getYear() + ":" + date.getMonthValue(), 1L, Long::sum);
+                }
+                period = habit.getFrequency().periodStart(period.minusDays(1));
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into habit_logs (habit_id, date, period_key) values (?, ?, ?)", logRows);
+
+        List<Object[]> rollupRows = new ArrayList<>();
+        rollup.forEach((key, completions) -> {
+            String[] parts = key.split(":");
+            rollupRows.add(new Object[]{Long.parseLong(parts[0]), Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2]), completions});
+        });
+        jdbcTemplate.batchUpdate("insert into habit_monthly_rollup (habit_id, year, month, completions)" +
+                " values (?, ?, ?, ?)", rollupRows);
+    }
+
+    @Benchmark
+    public List<Habit> allHabits() {
+        return habitService.getAllHabits();
+    }
+
+    @Benchmark
+    public Map<String, Integer> monthlyStats() {
+        return habitStatsService.getMonthlyStats(today.getYear(), today.getMonthValue());
+    }
+
+    @Benchmark
+    public Map<String, Object> rangeStatsLastYear() {
+        return habitStatsService.getRangeStats(yearStart, today);
+    }
+
+    @Benchmark
+    public Map<Long, List<LocalDate>> completedDatesLastYear() {
+        return habitLogService.getCompletedDates(null, yearStart, today);
+    }
+
+    @Benchmark
+    public Map<Long, CompletionCalendar> calendarsLastYear() {
+        return habitLogService.getCalendars(null, yearStart, today);
+    }
+
+    @Benchmark
+    public Map<Long, StreakService.Streak> streaksCached() {
+        return streakService.getStreaks(frequencies);
+    }
+
+    @Benchmark
+    public Map<Long, StreakService.Streak> streaksRebuilt() {
+        frequencies.keySet().forEach(streakService::evict);
+        return streakService.getStreaks(frequencies);
+    }
+}
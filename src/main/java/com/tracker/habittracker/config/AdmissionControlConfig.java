@@ -0,0 +1,36 @@
+package com.tracker.habittracker.config;
+
+import com.tracker.habittracker.service.HabitService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Per-client rate limits and the stats work budget (see
+ * {@link AdmissionControlFilter}). Set {@code app.rate-limit.enabled=false} to
+ * turn them off, e.g. for load tests run from a single machine.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControlConfig {
+
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(
+            HabitService habitService, MeterRegistry meterRegistry,
+            @Value("${app.rate-limit.writes.rate-per-second:20}") double writeRate,
+            @Value("${app.rate-limit.writes.burst:50}") int writeBurst,
+            @Value("${app.rate-limit.stats.rate-per-second:5}") double statsRate,
+            @Value("${app.rate-limit.stats.burst:20}") int statsBurst,
+            @Value("${app.rate-limit.max-clients:100000}") int maxClients,
+            @Value("${app.rate-limit.stats.max-concurrent-cost:10000000}") int maxConcurrentStatsCost) {
+        AdmissionControlFilter filter = new AdmissionControlFilter(
+                new TokenBucket.Limit(writeRate, writeBurst), new TokenBucket.Limit(statsRate, statsBurst),
+                maxClients, maxConcurrentStatsCost, () -> habitService.getAllHabits().size(), meterRegistry);
+        FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
@@ -0,0 +1,167 @@
+package com.tracker.habittracker.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control in front of the habit endpoints, so one client looping on
+ * writes or long-range stats cannot take the connection pool from everyone else.
+ * <p>
+ * Each client (by remote address) has a token bucket for writes and one for
+ * stats reads. Stats requests must also fit in a shared budget of concurrent
+ * work, weighted by the habit-days they read (days in the range times habits
+ * covered). Requests over either limit are rejected at once with 429 and a
+ * Retry-After; nothing waits in the filter.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+    private static final String STATS_PATH = "/api/habits/stats";
+    // Longest of the rolling endpoint's default windows
+    private static final int DEFAULT_ROLLING_WINDOW = 90;
+
+    private final TokenBucket.Limit writeLimit;
+    private final TokenBucket.Limit statsLimit;
+    private final Cache<String, TokenBucket> writeBuckets;
+    private final Cache<String, TokenBucket> statsBuckets;
+    private final int maxStatsCost;
+    private final Semaphore statsCost;
+    private final LongSupplier habitCount;
+    private final MeterRegistry meterRegistry;
+
+    public AdmissionControlFilter(TokenBucket.Limit writeLimit, TokenBucket.Limit statsLimit, int maxClients,
+                                  int maxConcurrentStatsCost, LongSupplier habitCount, MeterRegistry meterRegistry) {
+        this.writeLimit = writeLimit;
+        this.statsLimit = statsLimit;
+        this.writeBuckets = buckets(writeLimit, maxClients);
+        this.statsBuckets = buckets(statsLimit, maxClients);
+        this.maxStatsCost = maxConcurrentStatsCost;
+        this.statsCost = new Semaphore(maxConcurrentStatsCost);
+        this.habitCount = habitCount;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // A bucket left idle long enough to refill is the same as a new one, so it can be dropped
+    private static Cache<String, TokenBucket> buckets(TokenBucket.Limit limit, int maxClients) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofNanos(limit.refillNanos()))
+                .build();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        boolean write = !READ_METHODS.contains(request.getMethod());
+        boolean stats = !write && path.startsWith(STATS_PATH);
+        if (!write && !stats) {
+            chain.doFilter(request, response);
+            return;
+        }
+        TokenBucket bucket = write
+                ? writeBuckets.get(request.getRemoteAddr(), client -> new TokenBucket(writeLimit))
+                : statsBuckets.get(request.getRemoteAddr(), client -> new TokenBucket(statsLimit));
+        long wait = bucket.tryAcquire(System.nanoTime());
+        if (wait > 0) {
+            reject(response, "rate", Duration.ofNanos(wait), "Too many requests");
+            return;
+        }
+        if (!stats) {
+            chain.doFilter(request, response);
+            return;
+        }
+        int cost = statsCost(request, path);
+        if (!statsCost.tryAcquire(cost)) {
+            reject(response, "cost", Duration.ofSeconds(1), "Too much stats work in progress");
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            statsCost.release(cost);
+        }
+    }
+
+    /**
+     * Habit-days a stats request reads. Requests too large for the whole budget
+     * cost the whole budget, so they run alone rather than never.
+     */
+    int statsCost(HttpServletRequest request, String path) {
+        long days = 1;
+        try {
+            String start = request.getParameter("start");
+            String end = request.getParameter("end");
+            String month = request.getParameter("month");
+            String year = request.getParameter("year");
+            if (start != null && end != null) {
+                days = LocalDate.parse(end).toEpochDay() - LocalDate.parse(start).toEpochDay() + 1;
+                if (path.endsWith("/rolling")) {
+                    days += longestWindow(request.getParameterValues("windows")) - 1;
+                }
+            } else if (month != null && year != null) {
+                days = YearMonth.of(Integer.parseInt(year), Integer.parseInt(month)).lengthOfMonth();
+            }
+        } catch (DateTimeException | NumberFormatException e) {
+            // Invalid parameters are rejected by the controller without reading anything
+        }
+        String[] ids = request.getParameterValues("ids");
+        long habits = ids == null ? habitCount.getAsLong() : countIds(ids);
+        return (int) Math.min(maxStatsCost, Math.max(1, Math.max(1, days) * Math.max(1, habits)));
+    }
+
+    private static int longestWindow(String[] windows) {
+        if (windows == null) {
+            return DEFAULT_ROLLING_WINDOW;
+        }
+        int longest = 1;
+        for (String value : windows) {
+            for (String window : value.split(",")) {
+                longest = Math.max(longest, Integer.parseInt(window.trim()));
+            }
+        }
+        return longest;
+    }
+
+    private static long countIds(String[] ids) {
+        long count = 0;
+        for (String value : ids) {
+            for (String id : value.split(",")) {
+                if (!id.isBlank()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void reject(HttpServletResponse response, String reason, Duration retryAfter, String message)
+            throws IOException {
+        Counter.builder("http.server.requests.rejected")
+                .description("Requests turned away by admission control")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        long seconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), message);
+    }
+}
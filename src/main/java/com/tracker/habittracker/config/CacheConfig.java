@@ -0,0 +1,36 @@
+package com.tracker.habittracker.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Bounded in-memory cache for habit metadata. Set {@code app.cache.enabled=false}
+ * to serve every lookup from the database, e.g. to compare latency. Puts and
+ * evictions inside a transaction wait for its commit, so a concurrent read
+ * cannot cache the row the transaction is about to change.
+ */
+@Configuration
+@EnableCaching
+@ConditionalOnProperty(name = "app.cache.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheConfig {
+
+    public static final String HABITS_BY_ID = "habitsById";
+    public static final String ALL_HABITS = "allHabits";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${app.cache.max-size:10000}") long maxSize) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(HABITS_BY_ID, ALL_HABITS);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats());
+        cacheManager.setAllowNullValues(false);
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
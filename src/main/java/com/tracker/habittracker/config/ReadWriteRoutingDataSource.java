@@ -0,0 +1,51 @@
+package com.tracker.habittracker.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * Hands out primary connections, except to read-only transactions, which read
+ * the replica. The connection is only fetched when its first statement runs,
+ * after the transaction has marked it read-only, so the choice follows
+ * {@code @Transactional(readOnly = true)} (see {@link LazyConnectionDataSourceProxy}).
+ * Requests pinned by {@link ReadYourWritesFilter} and work run through
+ * {@link #readPrimary} read the primary as well.
+ */
+public class ReadWriteRoutingDataSource extends LazyConnectionDataSourceProxy {
+
+    private static final ThreadLocal<Boolean> PRIMARY_READS = new ThreadLocal<>();
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica) {
+        super(primary);
+        setReadOnlyDataSource(new DelegatingDataSource(replica) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return ReadYourWritesFilter.isPinned() || PRIMARY_READS.get() != null
+                        ? primary.getConnection() : super.getConnection();
+            }
+        });
+    }
+
+    /**
+     * Runs {@code work} with read-only transactions reading the primary, for loads
+     * kept in memory afterwards, which must not miss writes the replica has yet to
+     * apply. Only connections taken inside it are affected, so call it outside any
+     * read-only transaction. Has no effect without a replica.
+     */
+    public static <T> T readPrimary(Supplier<T> work) {
+        Boolean previous = PRIMARY_READS.get();
+        PRIMARY_READS.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_READS.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.tracker.habittracker.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables {@code @Scheduled} methods, such as the periodic flush of the
+ * write-behind buffer.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,33 @@
+package com.tracker.habittracker.config;
+
+/**
+ * Counts the JDBC statements created on the current thread while a count is
+ * active. Outside an active count, recording is a single thread-local read.
+ */
+public final class SqlStatementCounter {
+
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+
+    private SqlStatementCounter() {
+    }
+
+    public static void start() {
+        COUNT.set(new int[1]);
+    }
+
+    /**
+     * Ends the count on this thread and returns the number of statements seen.
+     */
+    public static int stop() {
+        int[] count = COUNT.get();
+        COUNT.remove();
+        return count == null ? 0 : count[0];
+    }
+
+    static void increment() {
+        int[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+    }
+}
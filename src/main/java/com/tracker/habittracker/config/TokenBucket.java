@@ -0,0 +1,55 @@
+package com.tracker.habittracker.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket refilled at a steady rate up to its burst size. The whole state
+ * is the time at which the bucket will be full again, advanced by
+ * compare-and-set, so concurrent requests never block each other.
+ */
+public final class TokenBucket {
+
+    public record Limit(double ratePerSecond, int burst) {
+        public Limit {
+            if (ratePerSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("Rate and burst must be positive");
+            }
+        }
+
+        long nanosPerToken() {
+            return Math.max(1, Math.round(1_000_000_000 / ratePerSecond));
+        }
+
+        // Time an idle bucket takes to refill completely
+        long refillNanos() {
+            return nanosPerToken() * burst;
+        }
+    }
+
+    private final long nanosPerToken;
+    private final long capacityNanos;
+    private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+    public TokenBucket(Limit limit) {
+        this.nanosPerToken = limit.nanosPerToken();
+        this.capacityNanos = limit.refillNanos();
+    }
+
+    /**
+     * Takes a token at {@code now} (in {@link System#nanoTime()} terms). Returns 0
+     * when one was available, otherwise how many nanoseconds until one will be.
+     */
+    public long tryAcquire(long now) {
+        while (true) {
+            long full = fullAt.get();
+            long next = Math.max(full, now) + nanosPerToken;
+            long wait = next - now - capacityNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(full, next)) {
+                return 0;
+            }
+        }
+    }
+}
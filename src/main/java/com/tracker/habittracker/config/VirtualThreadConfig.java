@@ -0,0 +1,31 @@
+package com.tracker.habittracker.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Active when {@code spring.threads.virtual.enabled=true}. Tomcat then starts a
+ * virtual thread per request instead of drawing from its bounded pool, so the
+ * API is given its own concurrency limit; the Hikari pool size still bounds how
+ * many of those requests talk to PostgreSQL at once.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            @Value("${app.virtual-threads.max-concurrent-requests:500}") int maxConcurrentRequests,
+            @Value("${app.virtual-threads.queue-timeout:2s}") Duration queueTimeout) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(maxConcurrentRequests, queueTimeout));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+}
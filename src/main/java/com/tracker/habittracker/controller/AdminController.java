@@ -0,0 +1,78 @@
+package com.tracker.habittracker.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.tracker.habittracker.repository.HabitMonthlyRollupJdbcRepository.Mismatch;
+import com.tracker.habittracker.service.HabitPurgeService;
+import com.tracker.habittracker.service.HabitPurgeService.PurgeStatus;
+import com.tracker.habittracker.service.MonthlyRollupService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final MonthlyRollupService monthlyRollupService;
+    private final ObjectProvider<CacheManager> cacheManager;
+    private final HabitPurgeService habitPurgeService;
+
+    public AdminController(MonthlyRollupService monthlyRollupService, ObjectProvider<CacheManager> cacheManager,
+                           HabitPurgeService habitPurgeService) {
+        this.monthlyRollupService = monthlyRollupService;
+        this.cacheManager = cacheManager;
+        this.habitPurgeService = habitPurgeService;
+    }
+
+    @PostMapping("/rollups/rebuild")
+    public Map<String, Integer> rebuildRollups() {
+        return Map.of("rows", monthlyRollupService.rebuild());
+    }
+
+    // Months whose rollup differs from the raw logs; empty when consistent
+    @GetMapping("/rollups/check")
+    public List<Mismatch> checkRollups() {
+        return monthlyRollupService.check();
+    }
+
+    // Deleted habits whose logs are still being purged, with the number left
+    @GetMapping("/purges")
+    public List<PurgeStatus> pendingPurges() {
+        return habitPurgeService.pending();
+    }
+
+    // Hit/miss counters of the habit caches since startup
+    @GetMapping("/cache")
+    public Map<String, Object> cacheStats() {
+        CacheManager manager = cacheManager.getIfAvailable();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", manager != null);
+        if (manager == null) {
+            return result;
+        }
+        for (String name : manager.getCacheNames()) {
+            Cache cache = manager.getCache(name);
+            if (cache instanceof TransactionAwareCacheDecorator decorator) {
+                cache = decorator.getTargetCache();
+            }
+            if (cache instanceof CaffeineCache caffeineCache) {
+                CacheStats stats = caffeineCache.getNativeCache().stats();
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("size", caffeineCache.getNativeCache().estimatedSize());
+                entry.put("hits", stats.hitCount());
+                entry.put("misses", stats.missCount());
+                entry.put("hitRate", stats.hitRate());
+                entry.put("evictions", stats.evictionCount());
+                result.put(name, entry);
+            }
+        }
+        return result;
+    }
+}
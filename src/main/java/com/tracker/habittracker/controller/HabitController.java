@@ -1,12 +1,46 @@
 package com.tracker.habittracker.controller;
 
+import com.tracker.habittracker.config.ReadWriteRoutingDataSource;
+import com.tracker.habittracker.dto.BulkMarkRequest;
+import com.tracker.habittracker.dto.BulkMarkResult;
+import com.tracker.habittracker.dto.CompletionCalendar;
 import com.tracker.habittracker.dto.CreateHabitRequest;
+import com.tracker.habittracker.dto.HabitLogResponse;
+import com.tracker.habittracker.dto.HabitResponse;
+import com.tracker.habittracker.dto.HabitSummary;
+import com.tracker.habittracker.dto.ImportResult;
+import com.tracker.habittracker.dto.KeysetPage;
+import com.tracker.habittracker.dto.RollingSeries;
+import com.tracker.habittracker.model.Frequency;
 import com.tracker.habittracker.model.Habit;
+import com.tracker.habittracker.service.BulkMarkService;
+import com.tracker.habittracker.service.DataVersions;
+import com.tracker.habittracker.service.HabitAnalyticsService;
+import com.tracker.habittracker.service.HabitLogExportService;
+import com.tracker.habittracker.service.HabitLogImportService;
 import com.tracker.habittracker.service.HabitService;
 import com.tracker.habittracker.service.HabitLogService;
+import com.tracker.habittracker.service.HabitStatsService;
+import com.tracker.habittracker.service.IdempotencyService;
+import com.tracker.habittracker.service.LogFileFormat;
+import com.tracker.habittracker.service.StreakService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
@@ -16,22 +50,69 @@ import java.util.Map;
 @RequestMapping("/api/habits")
 public class HabitController {
 
+    private static final int MAX_BULK_OPERATIONS = 10_000;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int MAX_ROLLING_DAYS = 3660;
+    private static final int MAX_ROLLING_WINDOW = 366;
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     private final HabitService habitService;
     private final HabitLogService habitLogService;
+    private final HabitStatsService habitStatsService;
+    private final BulkMarkService bulkMarkService;
+    private final StreakService streakService;
+    private final HabitLogExportService habitLogExportService;
+    private final HabitLogImportService habitLogImportService;
+    private final HabitAnalyticsService habitAnalyticsService;
+    private final IdempotencyService idempotencyService;
+    private final DataVersions dataVersions;
+    private final Duration pastRangeMaxAge;
 
-    public HabitController(HabitService habitService, HabitLogService habitLogService) {
+    public HabitController(HabitService habitService, HabitLogService habitLogService,
+                           HabitStatsService habitStatsService, BulkMarkService bulkMarkService,
+                           StreakService streakService, HabitLogExportService habitLogExportService,
+                           HabitLogImportService habitLogImportService,
+                           HabitAnalyticsService habitAnalyticsService, IdempotencyService idempotencyService,
+                           DataVersions dataVersions,
+                           @Value("${app.http.past-range-max-age:1h}") Duration pastRangeMaxAge) {
         this.habitService = habitService;
         this.habitLogService = habitLogService;
+        this.habitStatsService = habitStatsService;
+        this.bulkMarkService = bulkMarkService;
+        this.streakService = streakService;
+        this.habitLogExportService = habitLogExportService;
+        this.habitLogImportService = habitLogImportService;
+        this.habitAnalyticsService = habitAnalyticsService;
+        this.idempotencyService = idempotencyService;
+        this.dataVersions = dataVersions;
+        this.pastRangeMaxAge = pastRangeMaxAge;
     }
 
+    /**
+     * Habits in id order, one page at a time. When there are more, the
+     * X-Next-Cursor header holds the {@code after} value of the next page.
+     */
     @GetMapping
-    public List<Habit> getAllHabits() {
-        return habitService.getAllHabits();
+    public ResponseEntity<List<HabitResponse>> getAllHabits(@RequestParam(required = false) Long after,
+                                                            @RequestParam(defaultValue = "100") int limit) {
+        KeysetPage<HabitSummary> page = habitService.getHabitPage(after, pageSize(limit));
+        Map<Long, Frequency> frequencies = new HashMap<>();
+        page.items().forEach(habit -> frequencies.put(habit.id(), habit.frequency()));
+        Map<Long, StreakService.Streak> streaks = streakService.getStreaks(frequencies);
+        return withNextCursor(page, page.items().stream()
+                .map(habit -> HabitResponse.of(habit, streaks.get(habit.id())))
+                .toList());
     }
 
     @PostMapping
-    public Habit addHabit(@RequestBody CreateHabitRequest request) {
-        return habitService.addHabit(request);
+    public HabitResponse addHabit(@RequestBody CreateHabitRequest request) {
+        Habit habit = habitService.addHabit(request);
+        // A new habit has no completions, so no streak to look up
+        return HabitResponse.of(new HabitSummary(habit.getId(), habit.getName(), habit.getDescription(),
+                habit.getFrequency()), StreakService.Streak.NONE);
     }
 
     @DeleteMapping("/{id}")
@@ -39,81 +120,253 @@ public class HabitController {
         habitService.deleteHabit(id);
     }
 
+    /**
+     * Marks and unmarks accept an Idempotency-Key header: a retry with the same
+     * key from the same client address is answered without running the change
+     * again (see {@link IdempotencyService}).
+     */
     @PostMapping("/{id}/mark")
-    public void markHabit(@PathVariable Long id) {
-        Habit habit = habitService.getHabitById(id);
-        habitLogService.markHabit(habit);
+    public ResponseEntity<Void> markHabit(@PathVariable Long id,
+                                          @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String key,
+                                          HttpServletRequest request) {
+        return idempotent(request, key, "mark " + id,
+                () -> habitLogService.markHabit(habitService.getHabitById(id)));
     }
 
     @PostMapping("/{id}/markOn")
-    public void markHabitOnDate(@PathVariable Long id, @RequestParam String date) {
-        Habit habit = habitService.getHabitById(id);
+    public ResponseEntity<Void> markHabitOnDate(@PathVariable Long id, @RequestParam String date,
+                                                @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String key,
+                                                HttpServletRequest request) {
         LocalDate target = LocalDate.parse(date, DateTimeFormatter.ISO_DATE);
-        habitLogService.markHabitOnDate(habit, target);
+        return idempotent(request, key, "markOn " + id + " " + target,
+                () -> habitLogService.markHabitOnDate(habitService.getHabitById(id), target));
     }
 
     @DeleteMapping("/{id}/unmarkOn")
-    public void unmarkHabitOnDate(@PathVariable Long id, @RequestParam String date) {
-        Habit habit = habitService.getHabitById(id);
+    public ResponseEntity<Void> unmarkHabitOnDate(@PathVariable Long id, @RequestParam String date,
+                                                  @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String key,
+                                                  HttpServletRequest request) {
         LocalDate target = LocalDate.parse(date, DateTimeFormatter.ISO_DATE);
-        habitLogService.unmarkHabitOnDate(habit, target);
+        return idempotent(request, key, "unmarkOn " + id + " " + target,
+                () -> habitLogService.unmarkHabitOnDate(habitService.getHabitById(id), target));
     }
 
-    @GetMapping("/stats")
-    public Map<String, Integer> getStats(@RequestParam int month, @RequestParam int year) {
-        List<Habit> habits = habitService.getAllHabits();
-        Map<String, Integer> stats = new HashMap<>();
-        LocalDate start = LocalDate.of(year, month, 1);
-        LocalDate end = start.withDayOfMonth(start.lengthOfMonth());
+    @PostMapping("/bulk")
+    public List<BulkMarkResult> applyBulk(@RequestBody BulkMarkRequest request) {
+        if (request.operations == null || request.operations.isEmpty()) {
+            return List.of();
+        }
+        if (request.operations.size() > MAX_BULK_OPERATIONS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + MAX_BULK_OPERATIONS + " operations per request");
+        }
+        try {
+            return bulkMarkService.apply(request.operations);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
 
-        for (Habit habit : habits) {
-            int count = habitLogService.getHabitLogs(habit, start, end).size();
-            stats.put(habit.getName(), count);
+    /**
+     * Completions per habit in a month. Like the other stats and log reads it
+     * carries a weak ETag of the data version and answers a matching
+     * If-None-Match with 304 before touching the database. Otherwise it reads
+     * the primary: the version moves at commit, so a lagging replica would
+     * store the old data under the new tag.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Integer>> getStats(@RequestParam int month, @RequestParam int year,
+                                                         WebRequest request) {
+        String etag = dataVersions.etag(dataVersions.global());
+        CacheControl cacheControl = cacheControlFor(LocalDate.of(year, month, 1).plusMonths(1).minusDays(1));
+        if (request.checkNotModified(etag)) {
+            return notModified(etag, cacheControl);
         }
-        return stats;
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl)
+                .body(ReadWriteRoutingDataSource.readPrimary(() -> habitStatsService.getMonthlyStats(year, month)));
     }
 
+    /**
+     * Logs of a habit in (date, id) order, paginated like {@link #getAllHabits}.
+     */
     @GetMapping("/{id}/logs")
-    public List<?> getHabitLogs(@PathVariable Long id, @RequestParam String start, @RequestParam String end) {
+    public ResponseEntity<List<HabitLogResponse>> getHabitLogs(@PathVariable Long id, @RequestParam String start,
+                                                               @RequestParam String end,
+                                                               @RequestParam(required = false) String after,
+                                                               @RequestParam(defaultValue = "100") int limit,
+                                                               WebRequest request) {
+        LocalDate s = LocalDate.parse(start, DateTimeFormatter.ISO_DATE);
+        LocalDate e = LocalDate.parse(end, DateTimeFormatter.ISO_DATE);
+        String etag = dataVersions.etag(dataVersions.habit(id));
+        CacheControl cacheControl = cacheControlFor(e);
+        if (request.checkNotModified(etag)) {
+            return notModified(etag, cacheControl);
+        }
         Habit habit = habitService.getHabitById(id);
+        KeysetPage<HabitLogResponse> page;
+        try {
+            page = ReadWriteRoutingDataSource.readPrimary(
+                    () -> habitLogService.getHabitLogs(habit, s, e, after, pageSize(limit)));
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage());
+        }
+        return withNextCursor(ResponseEntity.ok().eTag(etag).cacheControl(cacheControl), page, page.items());
+    }
+
+    @GetMapping("/logs")
+    public Map<Long, List<LocalDate>> getLogsForHabits(@RequestParam String start,
+                                                       @RequestParam String end,
+                                                       @RequestParam(required = false) List<Long> ids) {
         LocalDate s = LocalDate.parse(start, DateTimeFormatter.ISO_DATE);
         LocalDate e = LocalDate.parse(end, DateTimeFormatter.ISO_DATE);
-        return habitLogService.getHabitLogs(habit, s, e);
+        return habitLogService.getCompletedDates(ids, s, e);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportLogs(@RequestParam(defaultValue = "ndjson") String format,
+                                                            @RequestParam(required = false) String start,
+                                                            @RequestParam(required = false) String end,
+                                                            @RequestParam(required = false) List<Long> ids) {
+        LogFileFormat exportFormat;
+        try {
+            exportFormat = LogFileFormat.fromString(format);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        LocalDate s = start == null ? null : LocalDate.parse(start, DateTimeFormatter.ISO_DATE);
+        LocalDate e = end == null ? null : LocalDate.parse(end, DateTimeFormatter.ISO_DATE);
+        StreamingResponseBody body = out -> habitLogExportService.export(exportFormat, ids, s, e, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"habit-logs." + exportFormat.getExtension() + "\"")
+                .body(body);
+    }
+
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ImportResult importLogs(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                   InputStream body) throws IOException {
+        try {
+            return habitLogImportService.importLogs(LogFileFormat.fromContentType(contentType), body);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}/calendar")
+    public CompletionCalendar getCalendar(@PathVariable Long id, @RequestParam int year) {
+        Habit habit = habitService.getHabitById(id);
+        LocalDate start = LocalDate.of(year, 1, 1);
+        return habitLogService.getCalendar(habit, start, start.withDayOfYear(start.lengthOfYear()));
+    }
+
+    @GetMapping("/calendar")
+    public Map<Long, CompletionCalendar> getCalendars(@RequestParam int year,
+                                                      @RequestParam(required = false) List<Long> ids) {
+        LocalDate start = LocalDate.of(year, 1, 1);
+        return habitLogService.getCalendars(ids, start, start.withDayOfYear(start.lengthOfYear()));
     }
 
     @GetMapping("/stats/range")
-    public Map<String, Object> getStatsForRange(@RequestParam String start, @RequestParam String end) {
+    public ResponseEntity<Map<String, Object>> getStatsForRange(@RequestParam String start, @RequestParam String end,
+                                                                WebRequest request) {
         LocalDate s = LocalDate.parse(start, DateTimeFormatter.ISO_DATE);
         LocalDate e = LocalDate.parse(end, DateTimeFormatter.ISO_DATE);
+        // Current streaks move with the day, so the tag and any reuse end at midnight
+        LocalDateTime now = LocalDateTime.now();
+        String etag = dataVersions.etag(dataVersions.global(), now.toLocalDate());
+        CacheControl cacheControl = cacheControlFor(e, Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()));
+        if (request.checkNotModified(etag)) {
+            return notModified(etag, cacheControl);
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl)
+                .body(ReadWriteRoutingDataSource.readPrimary(() -> habitStatsService.getRangeStats(s, e)));
+    }
+
+    /**
+     * Daily series of rolling completion rates, one per window length in days,
+     * for every day of the range.
+     */
+    @GetMapping("/stats/rolling")
+    public ResponseEntity<List<RollingSeries>> getRollingStats(@RequestParam String start, @RequestParam String end,
+                                                               @RequestParam(defaultValue = "7,30,90") List<Integer> windows,
+                                                               @RequestParam(required = false) List<Long> ids,
+                                                               WebRequest request) {
+        LocalDate s = LocalDate.parse(start, DateTimeFormatter.ISO_DATE);
+        LocalDate e = LocalDate.parse(end, DateTimeFormatter.ISO_DATE);
+        if (e.isBefore(s) || e.toEpochDay() - s.toEpochDay() >= MAX_ROLLING_DAYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "end must be on or after start and at most " + MAX_ROLLING_DAYS + " days later");
+        }
+        if (windows.isEmpty() || windows.stream().anyMatch(w -> w < 1 || w > MAX_ROLLING_WINDOW)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "windows must be between 1 and " + MAX_ROLLING_WINDOW + " days");
+        }
+        String etag = dataVersions.etag(dataVersions.global());
+        CacheControl cacheControl = cacheControlFor(e);
+        if (request.checkNotModified(etag)) {
+            return notModified(etag, cacheControl);
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl)
+                .body(ReadWriteRoutingDataSource.readPrimary(() -> habitAnalyticsService.getRollingSeries(
+                        ids, s, e, windows.stream().distinct().toList())));
+    }
+
+    // Keys are scoped to the client address, as rate limits are
+    private ResponseEntity<Void> idempotent(HttpServletRequest request, String key, String fingerprint,
+                                            Runnable work) {
+        if (key != null && (key.isBlank() || key.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    IDEMPOTENCY_KEY_HEADER + " must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        return switch (idempotencyService.run(request.getRemoteAddr(), key, fingerprint, work)) {
+            case EXECUTED -> ResponseEntity.ok().build();
+            case REPLAYED -> ResponseEntity.ok().header(IDEMPOTENT_REPLAYED_HEADER, "true").build();
+            case IN_PROGRESS -> ResponseEntity.status(HttpStatus.CONFLICT).header(HttpHeaders.RETRY_AFTER, "1").build();
+            case MISMATCH -> throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    IDEMPOTENCY_KEY_HEADER + " was already used for a different request");
+        };
+    }
+
+    private static int pageSize(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
+
+    private static <T> ResponseEntity<List<T>> withNextCursor(KeysetPage<?> page, List<T> body) {
+        return withNextCursor(ResponseEntity.ok(), page, body);
+    }
+
+    private static <T> ResponseEntity<List<T>> withNextCursor(ResponseEntity.BodyBuilder response, KeysetPage<?> page,
+                                                              List<T> body) {
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(body);
+    }
+
+    private CacheControl cacheControlFor(LocalDate end) {
+        return cacheControlFor(end, pastRangeMaxAge);
+    }
+
+    /**
+     * Ranges that ended before today only change through backfills, so clients
+     * may reuse them for up to {@code app.http.past-range-max-age} (and at most
+     * {@code limit}). Anything else is revalidated on each use, which the ETag
+     * keeps cheap.
+     */
+    private CacheControl cacheControlFor(LocalDate end, Duration limit) {
+        if (end.isBefore(LocalDate.now())) {
+            Duration maxAge = pastRangeMaxAge.compareTo(limit) < 0 ? pastRangeMaxAge : limit;
+            return CacheControl.maxAge(maxAge).cachePrivate();
+        }
+        return CacheControl.noCache().cachePrivate();
+    }
 
-        List<Habit> habits = habitService.getAllHabits();
-        Map<String, Object> result = new HashMap<>();
-
-        for (Habit habit : habits) {
-            int completions = habitLogService.getHabitLogs(habit, s, e).size();
-
-            long possible;
-            switch (habit.getFrequency()) {
-                case DAILY:
-                    possible = e.toEpochDay() - s.toEpochDay() + 1;
-                    break;
-                case WEEKLY:
-                    possible = Math.max(1, (int) Math.ceil((e.toEpochDay() - s.toEpochDay() + 1) / 7.0));
-                    break;
-                case MONTHLY:
-                    possible = Math.max(1, (int) Math.ceil((e.getYear() - s.getYear()) * 12 + (e.getMonthValue() - s.getMonthValue()) + 1));
-                    break;
-                default:
-                    possible = 0;
-            }
-
-            double rate = possible == 0 ? 0.0 : (double) completions / possible;
-            Map<String, Object> stats = new HashMap<>();
-            stats.put("completions", completions);
-            stats.put("possible", possible);
-            stats.put("rate", rate);
-            result.put(habit.getName(), stats);
-        }
-        return result;
+    private static <T> ResponseEntity<T> notModified(String etag, CacheControl cacheControl) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
     }
 }
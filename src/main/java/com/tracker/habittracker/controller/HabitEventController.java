@@ -0,0 +1,33 @@
+package com.tracker.habittracker.controller;
+
+import com.tracker.habittracker.service.HabitEventService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Server-Sent Events stream of habit changes, see {@link HabitEventService}.
+ */
+@RestController
+@RequestMapping("/api/habits")
+public class HabitEventController {
+
+    private final HabitEventService habitEventService;
+
+    public HabitEventController(HabitEventService habitEventService) {
+        this.habitEventService = habitEventService;
+    }
+
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe() {
+        try {
+            return habitEventService.subscribe();
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.tracker.habittracker.dto;
+
+import java.util.List;
+
+public class BulkMarkRequest {
+    public List<Operation> operations;
+
+    public static class Operation {
+        public Long habitId;
+        public String date;      // ISO date, e.g. "2025-03-01"
+        public String action;    // "mark" or "unmark"
+    }
+}
@@ -0,0 +1,18 @@
+package com.tracker.habittracker.dto;
+
+/**
+ * Outcome of one operation of a bulk request, in request order. {@code status}
+ * is one of marked, already_marked, unmarked, not_marked, habit_not_found or
+ * invalid; {@code error} is only set for invalid operations.
+ */
+public record BulkMarkResult(int index, Long habitId, String date, String action, String status, String error) {
+
+    public static BulkMarkResult of(int index, BulkMarkRequest.Operation op, String status) {
+        return new BulkMarkResult(index, op.habitId, op.date, op.action, status, null);
+    }
+
+    public static BulkMarkResult invalid(int index, BulkMarkRequest.Operation op, String error) {
+        return new BulkMarkResult(index, op == null ? null : op.habitId, op == null ? null : op.date,
+                op == null ? null : op.action, "invalid", error);
+    }
+}
@@ -0,0 +1,70 @@
+package com.tracker.habittracker.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+
+/**
+ * Completion days of one habit as a bitset: bit {@code i} is set when the habit
+ * was completed on {@code start + i} days. A full year fits in 46 bytes.
+ */
+@JsonSerialize(using = CompletionCalendarSerializer.class)
+public class CompletionCalendar {
+
+    private final LocalDate start;
+    private final int days;
+    private final BitSet bits;
+
+    public CompletionCalendar(LocalDate start, LocalDate end) {
+        if (end.isBefore(start)) {
+            throw new IllegalArgumentException("Calendar end must not be before start");
+        }
+        this.start = start;
+        this.days = Math.toIntExact(end.toEpochDay() - start.toEpochDay() + 1);
+        this.bits = new BitSet(days);
+    }
+
+    // Dates outside the calendar are ignored
+    public void mark(LocalDate date) {
+        long offset = date.toEpochDay() - start.toEpochDay();
+        if (offset >= 0 && offset < days) {
+            bits.set((int) offset);
+        }
+    }
+
+    public void unmark(LocalDate date) {
+        long offset = date.toEpochDay() - start.toEpochDay();
+        if (offset >= 0 && offset < days) {
+            bits.clear((int) offset);
+        }
+    }
+
+    public boolean isMarked(LocalDate date) {
+        long offset = date.toEpochDay() - start.toEpochDay();
+        return offset >= 0 && offset < days && bits.get((int) offset);
+    }
+
+    public int getCompletions() {
+        return bits.cardinality();
+    }
+
+    public LocalDate getStart() {
+        return start;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * Little-endian bitmap padded to {@code ceil(days / 8)} bytes: day {@code i}
+     * is bit {@code i % 8} of byte {@code i / 8}.
+     */
+    public byte[] toBitmap() {
+        byte[] raw = bits.toByteArray();
+        byte[] bitmap = new byte[(days + 7) / 8];
+        System.arraycopy(raw, 0, bitmap, 0, raw.length);
+        return bitmap;
+    }
+}
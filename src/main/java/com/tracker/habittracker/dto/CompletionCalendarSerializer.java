@@ -0,0 +1,28 @@
+package com.tracker.habittracker.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * Writes a {@link CompletionCalendar} as
+ * {@code {"start":"2025-01-01","days":365,"bitmap":"<base64>"}}.
+ */
+public class CompletionCalendarSerializer extends StdSerializer<CompletionCalendar> {
+
+    public CompletionCalendarSerializer() {
+        super(CompletionCalendar.class);
+    }
+
+    @Override
+    public void serialize(CompletionCalendar calendar, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("start", calendar.getStart().toString());
+        gen.writeNumberField("days", calendar.getDays());
+        gen.writeStringField("bitmap", Base64.getEncoder().encodeToString(calendar.toBitmap()));
+        gen.writeEndObject();
+    }
+}
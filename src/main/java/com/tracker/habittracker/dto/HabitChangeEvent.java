@@ -0,0 +1,36 @@
+package com.tracker.habittracker.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * One change pushed to event stream subscribers. {@code type} is marked,
+ * unmarked, habit_added, habit_deleted or habits_changed. Marks and unmarks
+ * carry the logged date, the period it belongs to and the habit's completions
+ * in that month after the change; habits_changed follows bulk writes and
+ * imports and only lists the habits to reload.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record HabitChangeEvent(String type, Long habitId, LocalDate date, LocalDate periodStart,
+                               Integer monthCompletions, List<Long> habitIds) {
+
+    public static HabitChangeEvent completion(Long habitId, boolean completed, LocalDate date, LocalDate periodStart,
+                                              int monthCompletions) {
+        return new HabitChangeEvent(completed ? "marked" : "unmarked", habitId, date, periodStart,
+                monthCompletions, null);
+    }
+
+    public static HabitChangeEvent habitAdded(Long habitId) {
+        return new HabitChangeEvent("habit_added", habitId, null, null, null, null);
+    }
+
+    public static HabitChangeEvent habitDeleted(Long habitId) {
+        return new HabitChangeEvent("habit_deleted", habitId, null, null, null, null);
+    }
+
+    public static HabitChangeEvent habitsChanged(List<Long> habitIds) {
+        return new HabitChangeEvent("habits_changed", null, null, null, null, habitIds);
+    }
+}
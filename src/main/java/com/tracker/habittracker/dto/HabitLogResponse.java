@@ -0,0 +1,13 @@
+package com.tracker.habittracker.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.time.LocalDate;
+
+/**
+ * A log as returned by GET /{id}/logs, read by a constructor projection instead
+ * of loading HabitLog entities with their habit. Marks still waiting in the
+ * write-behind buffer have no id yet.
+ */
+@JsonSerialize(using = HabitLogResponseSerializer.class)
+public record HabitLogResponse(Long id, LocalDate date) {}
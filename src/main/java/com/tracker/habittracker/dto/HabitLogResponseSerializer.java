@@ -0,0 +1,63 @@
+package com.tracker.habittracker.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Writes a {@link HabitLogResponse} as {@code {"id":7,"date":"2025-03-02"}}.
+ * Log pages run to a thousand rows, so field names are pre-encoded and dates
+ * are written from a single char buffer rather than through
+ * {@link LocalDate#toString()}.
+ */
+public class HabitLogResponseSerializer extends StdSerializer<HabitLogResponse> {
+
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString DATE = new SerializedString("date");
+
+    public HabitLogResponseSerializer() {
+        super(HabitLogResponse.class);
+    }
+
+    @Override
+    public void serialize(HabitLogResponse log, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(ID);
+        if (log.id() == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(log.id());
+        }
+        gen.writeFieldName(DATE);
+        writeDate(log.date(), gen);
+        gen.writeEndObject();
+    }
+
+    // ISO yyyy-MM-dd; years outside 0..9999 need ISO's sign or extra digits
+    static void writeDate(LocalDate date, JsonGenerator gen) throws IOException {
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            gen.writeString(date.toString());
+            return;
+        }
+        char[] chars = new char[10];
+        digits(chars, 0, year, 4);
+        chars[4] = '-';
+        digits(chars, 5, date.getMonthValue(), 2);
+        chars[7] = '-';
+        digits(chars, 8, date.getDayOfMonth(), 2);
+        gen.writeString(chars, 0, chars.length);
+    }
+
+    private static void digits(char[] chars, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
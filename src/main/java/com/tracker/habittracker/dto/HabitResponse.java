@@ -0,0 +1,16 @@
+package com.tracker.habittracker.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.service.StreakService.Streak;
+
+@JsonSerialize(using = HabitResponseSerializer.class)
+public record HabitResponse(Long id, String name, String description, Frequency frequency,
+                            int currentStreak, int longestStreak) {
+
+    public static HabitResponse of(HabitSummary habit, Streak streak) {
+        Streak s = streak == null ? Streak.NONE : streak;
+        return new HabitResponse(habit.id(), habit.name(), habit.description(), habit.frequency(),
+                s.current(), s.longest());
+    }
+}
@@ -0,0 +1,49 @@
+package com.tracker.habittracker.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link HabitResponse} field by field with pre-encoded names, without
+ * the reflective accessors and boxing of the default record serializer.
+ */
+public class HabitResponseSerializer extends StdSerializer<HabitResponse> {
+
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString NAME = new SerializedString("name");
+    private static final SerializableString DESCRIPTION = new SerializedString("description");
+    private static final SerializableString FREQUENCY = new SerializedString("frequency");
+    private static final SerializableString CURRENT_STREAK = new SerializedString("currentStreak");
+    private static final SerializableString LONGEST_STREAK = new SerializedString("longestStreak");
+
+    public HabitResponseSerializer() {
+        super(HabitResponse.class);
+    }
+
+    @Override
+    public void serialize(HabitResponse habit, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(ID);
+        if (habit.id() == null) {
+            gen.writeNull();
+        } else {
+            gen.writeNumber(habit.id());
+        }
+        gen.writeFieldName(NAME);
+        gen.writeString(habit.name());
+        gen.writeFieldName(DESCRIPTION);
+        gen.writeString(habit.description());
+        gen.writeFieldName(FREQUENCY);
+        gen.writeString(habit.frequency() == null ? null : habit.frequency().getJsonValue());
+        gen.writeFieldName(CURRENT_STREAK);
+        gen.writeNumber(habit.currentStreak());
+        gen.writeFieldName(LONGEST_STREAK);
+        gen.writeNumber(habit.longestStreak());
+        gen.writeEndObject();
+    }
+}
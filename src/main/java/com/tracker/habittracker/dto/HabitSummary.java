@@ -0,0 +1,9 @@
+package com.tracker.habittracker.dto;
+
+import com.tracker.habittracker.model.Frequency;
+
+/**
+ * Habit columns read by a constructor projection, for listings that only
+ * render habits and never change them.
+ */
+public record HabitSummary(Long id, String name, String description, Frequency frequency) {}
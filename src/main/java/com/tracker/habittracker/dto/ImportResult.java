@@ -0,0 +1,10 @@
+package com.tracker.habittracker.dto;
+
+import java.util.List;
+
+/**
+ * Summary of a habit log import. {@code duplicates} counts rows whose habit
+ * period was already completed, either earlier in the file or in the database;
+ * {@code errors} holds the first few rejection reasons with their line numbers.
+ */
+public record ImportResult(long inserted, long duplicates, long rejected, List<String> errors) {}
@@ -0,0 +1,13 @@
+package com.tracker.habittracker.dto;
+
+import com.tracker.habittracker.model.Frequency;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Rolling completion rates of one habit: {@code rates.get(w)[i]} is the rate
+ * over the {@code w} days ending on {@code start + i} days.
+ */
+public record RollingSeries(Long habitId, String name, Frequency frequency, LocalDate start, LocalDate end,
+                            Map<Integer, double[]> rates) {}
@@ -3,6 +3,9 @@ package com.tracker.habittracker.model;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonValue;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
 public enum Frequency {
 	DAILY("daily"),
 	WEEKLY("weekly"),
@@ -36,6 +39,69 @@ public enum Frequency {
 				throw new IllegalArgumentException("Unknown frequency: " + value);
 		}
 	}
+
+	/**
+	 * First day of the period containing {@code date}: the date itself, the
+	 * Monday of its ISO week, or the first of its month.
+	 */
+	public LocalDate periodStart(LocalDate date) {
+		switch (this) {
+			case WEEKLY:
+				return date.with(DayOfWeek.MONDAY);
+			case MONTHLY:
+				return date.withDayOfMonth(1);
+			default:
+				return date;
+		}
+	}
+
+	/**
+	 * Last day of the period containing {@code date}.
+	 */
+	public LocalDate periodEnd(LocalDate date) {
+		switch (this) {
+			case WEEKLY:
+				return date.with(DayOfWeek.SUNDAY);
+			case MONTHLY:
+				return date.withDayOfMonth(date.lengthOfMonth());
+			default:
+				return date;
+		}
+	}
+
+	/**
+	 * Sequential number of the period containing {@code date}; consecutive
+	 * periods have consecutive indexes.
+	 */
+	public long periodIndex(LocalDate date) {
+		switch (this) {
+			case WEEKLY:
+				// 1970-01-01 is a Thursday, so shift by three days to start weeks on Monday
+				return Math.floorDiv(date.toEpochDay() + 3, 7);
+			case MONTHLY:
+				return date.getYear() * 12L + date.getMonthValue() - 1;
+			default:
+				return date.toEpochDay();
+		}
+	}
+
+	/**
+	 * Number of periods a habit with this frequency could be completed in
+	 * between {@code start} and {@code end} (both inclusive).
+	 */
+	public long periodsBetween(LocalDate start, LocalDate end) {
+		long days = end.toEpochDay() - start.toEpochDay() + 1;
+		switch (this) {
+			case DAILY:
+				return days;
+			case WEEKLY:
+				return Math.max(1, (int) Math.ceil(days / 7.0));
+			case MONTHLY:
+				return Math.max(1, (end.getYear() - start.getYear()) * 12 + (end.getMonthValue() - start.getMonthValue()) + 1);
+			default:
+				return 0;
+		}
+	}
 }
 
 
@@ -1,9 +1,14 @@
 package com.tracker.habittracker.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.SQLRestriction;
+
+import java.time.Instant;
 
 @Entity
 @Table(name = "habits")
+@SQLRestriction("deleted_at is null")   // Deleted habits stay until their logs are purged
 public class Habit {
 
     @Id
@@ -17,6 +22,10 @@ public class Habit {
     @Enumerated(EnumType.STRING)
     private Frequency frequency;     // DAILY, WEEKLY, MONTHLY
 
+    @JsonIgnore
+    @Column(name = "deleted_at")
+    private Instant deletedAt;       // Set when deleted; null for live habits
+
     // --- Constructors ---
 
     public Habit() {
@@ -69,4 +78,12 @@ public class Habit {
     public void setFrequency(Frequency frequency) {
         this.frequency = frequency;
     }
+
+    public Instant getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(Instant deletedAt) {
+        this.deletedAt = deletedAt;
+    }
 }
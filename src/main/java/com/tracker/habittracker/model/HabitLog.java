@@ -1,10 +1,18 @@
 package com.tracker.habittracker.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "habit_logs")
+@Table(name = "habit_logs",
+        uniqueConstraints = @UniqueConstraint(
+                name = "ux_habit_logs_habit_period", columnNames = {"habit_id", "period_key"}),
+        // Mirrors the migrations in db/migration, which own the schema
+        indexes = {
+                @Index(name = "ix_habit_logs_habit_date_id", columnList = "habit_id, date, id"),
+                @Index(name = "ix_habit_logs_date_habit", columnList = "date, habit_id")
+        })
 public class HabitLog {
 
     @Id
@@ -17,11 +25,25 @@ public class HabitLog {
 
     private LocalDate date;  // Date the habit was completed
 
+    // First day of the habit's period containing date; at most one log per period
+    @JsonIgnore
+    @Column(name = "period_key")
+    private LocalDate periodKey;
+
     public HabitLog() {}
 
     public HabitLog(Habit habit, LocalDate date) {
         this.habit = habit;
         this.date = date;
+        computePeriodKey();
+    }
+
+    @PrePersist
+    @PreUpdate
+    void computePeriodKey() {
+        if (habit != null && habit.getFrequency() != null && date != null) {
+            periodKey = habit.getFrequency().periodStart(date);
+        }
     }
 
     // Getters and Setters
@@ -31,4 +53,5 @@ public class HabitLog {
     public void setHabit(Habit habit) { this.habit = habit; }
     public LocalDate getDate() { return date; }
     public void setDate(LocalDate date) { this.date = date; }
+    public LocalDate getPeriodKey() { return periodKey; }
 }
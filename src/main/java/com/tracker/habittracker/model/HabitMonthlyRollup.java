@@ -0,0 +1,40 @@
+package com.tracker.habittracker.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Number of logs a habit has in one calendar month, kept in step with
+ * habit_logs by every write so monthly stats do not scan the raw logs.
+ */
+@Entity
+@Table(name = "habit_monthly_rollup",
+        uniqueConstraints = @UniqueConstraint(
+                name = "ux_habit_monthly_rollup", columnNames = {"habit_id", "year", "month"}),
+        indexes = @Index(name = "ix_habit_monthly_rollup_month", columnList = "year, month"))
+public class HabitMonthlyRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "habit_id", nullable = false)
+    private Long habitId;
+
+    @Column(nullable = false)
+    private int year;
+
+    @Column(nullable = false)
+    private int month;          // 1-12
+
+    @Column(nullable = false)
+    private long completions;
+
+    public HabitMonthlyRollup() {}
+
+    // Getters
+    public Long getId() { return id; }
+    public Long getHabitId() { return habitId; }
+    public int getYear() { return year; }
+    public int getMonth() { return month; }
+    public long getCompletions() { return completions; }
+}
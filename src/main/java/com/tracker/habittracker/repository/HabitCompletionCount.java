@@ -0,0 +1,14 @@
+package com.tracker.habittracker.repository;
+
+import com.tracker.habittracker.model.Frequency;
+
+/**
+ * Per-habit completion count, projected straight from the grouped stats query
+ * so no {@link com.tracker.habittracker.model.HabitLog} entities are loaded.
+ */
+public interface HabitCompletionCount {
+    Long getHabitId();
+    String getName();
+    Frequency getFrequency();
+    long getCompletions();
+}
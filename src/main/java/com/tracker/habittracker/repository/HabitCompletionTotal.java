@@ -0,0 +1,9 @@
+package com.tracker.habittracker.repository;
+
+/**
+ * Completion count of one habit, for partial results that are merged by id.
+ */
+public interface HabitCompletionTotal {
+    Long getHabitId();
+    long getCompletions();
+}
@@ -0,0 +1,40 @@
+package com.tracker.habittracker.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Plain JDBC access to deleted habits, which the Habit entity never loads.
+ */
+@Repository
+public class HabitJdbcRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public HabitJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record DeletedHabit(Long id, String name, Instant deletedAt) {}
+
+    // Oldest deletions first
+    public List<DeletedHabit> findDeleted() {
+        return jdbcTemplate.query(
+                "select id, name, deleted_at from habits where deleted_at is not null order by deleted_at, id",
+                (rs, i) -> new DeletedHabit(rs.getLong("id"), rs.getString("name"),
+                        rs.getTimestamp("deleted_at").toInstant()));
+    }
+
+    /**
+     * Removes a deleted habit together with whatever logs and rollups are left;
+     * run in one transaction once the bulk of its logs is purged.
+     */
+    public boolean deletePurged(Long habitId) {
+        jdbcTemplate.update("delete from habit_logs where habit_id = ?", habitId);
+        jdbcTemplate.update("delete from habit_monthly_rollup where habit_id = ?", habitId);
+        return jdbcTemplate.update("delete from habits where id = ? and deleted_at is not null", habitId) > 0;
+    }
+}
@@ -0,0 +1,11 @@
+package com.tracker.habittracker.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Date-only view of a habit log, used where only completed dates are needed.
+ */
+public interface HabitLogDate {
+    Long getHabitId();
+    LocalDate getDate();
+}
@@ -0,0 +1,274 @@
+package com.tracker.habittracker.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Plain JDBC access to habit_logs for write paths that need statement batching,
+ * which Hibernate disables for entities with IDENTITY ids.
+ */
+@Repository
+public class HabitLogJdbcRepository {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int IMPORT_BATCH_SIZE = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public HabitLogJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record LogRow(Long habitId, LocalDate date, LocalDate periodKey) {}
+
+    public record PeriodRange(Long habitId, LocalDate start, LocalDate end) {}
+
+    public record UpsertResult(Long id, LocalDate date, boolean inserted) {}
+
+    public record ExportRow(long id, long habitId, String habitName, LocalDate date) {}
+
+    @FunctionalInterface
+    public interface LogDayConsumer {
+        void accept(long habitId, int epochDay);
+    }
+
+    /**
+     * Inserts a log unless the habit already has one for the period, in a single
+     * round trip, and returns whichever row holds the period afterwards. The
+     * unique index on (habit_id, period_key) makes this safe under concurrency.
+     */
+    public UpsertResult insertIfAbsent(Long habitId, LocalDate date, LocalDate periodKey) {
+        List<UpsertResult> rows = jdbcTemplate.query(
+                "with ins as (" +
+                "  insert into habit_logs (habit_id, date, period_key) values (?, ?, ?)" +
+                "  on conflict (habit_id, period_key) do nothing" +
+                "  returning id, date)" +
+                " select id, date, true as inserted from ins" +
+                " union all" +
+                " select id, date, false from habit_logs" +
+                "  where habit_id = ? and period_key = ? and not exists (select 1 from ins)",
+                (rs, i) -> new UpsertResult(rs.getLong("id"), rs.getDate("date").toLocalDate(), rs.getBoolean("inserted")),
+                habitId, Date.valueOf(date), Date.valueOf(periodKey), habitId, Date.valueOf(periodKey));
+        if (!rows.isEmpty()) {
+            return rows.get(0);
+        }
+        // The conflicting row was committed after this statement's snapshot was taken
+        return jdbcTemplate.queryForObject(
+                "select id, date from habit_logs where habit_id = ? and period_key = ?",
+                (rs, i) -> new UpsertResult(rs.getLong("id"), rs.getDate("date").toLocalDate(), false),
+                habitId, Date.valueOf(periodKey));
+    }
+
+    /**
+     * Inserts the rows whose habit period has no log yet and returns those that
+     * were inserted. With reWriteBatchedInserts the driver cannot report counts
+     * for batched inserts, so each chunk is a single insert from arrays that
+     * returns its rows.
+     */
+    public List<LogRow> batchInsert(List<LogRow> rows) {
+        List<LogRow> inserted = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            List<LogRow> chunk = rows.subList(from, Math.min(rows.size(), from + BATCH_SIZE));
+            inserted.addAll(jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(
+                        "insert into habit_logs (habit_id, date, period_key)" +
+                        " select * from unnest(?::bigint[], ?::date[], ?::date[])" +
+                        " on conflict (habit_id, period_key) do nothing" +
+                        " returning habit_id, date, period_key");
+                ps.setArray(1, con.createArrayOf("bigint", chunk.stream().map(LogRow::habitId).toArray()));
+                ps.setArray(2, con.createArrayOf("date", chunk.stream().map(row -> Date.valueOf(row.date())).toArray()));
+                ps.setArray(3, con.createArrayOf("date",
+                        chunk.stream().map(row -> Date.valueOf(row.periodKey())).toArray()));
+                return ps;
+            }, (rs, i) -> new LogRow(rs.getLong(1), rs.getDate(2).toLocalDate(), rs.getDate(3).toLocalDate())));
+        }
+        return inserted;
+    }
+
+    /**
+     * Deletes the logs of a habit in a date range and returns their dates. Like
+     * the other date range queries, period_key is bounded too (see
+     * {@link HabitLogRepository}).
+     */
+    public List<LocalDate> deletePeriod(Long habitId, LocalDate start, LocalDate end) {
+        return jdbcTemplate.query(
+                "delete from habit_logs where habit_id = ? and date between ? and ?" +
+                        " and period_key between ? and ? returning date",
+                (rs, i) -> rs.getDate("date").toLocalDate(),
+                habitId, Date.valueOf(start), Date.valueOf(end), Date.valueOf(start.minusMonths(1)), Date.valueOf(end));
+    }
+
+    // Returns the ranges that had a log to delete
+    public List<PeriodRange> batchDeletePeriods(List<PeriodRange> ranges) {
+        int[][] counts = jdbcTemplate.batchUpdate(
+                "delete from habit_logs where habit_id = ? and date between ? and ? and period_key between ? and ?",
+                ranges, BATCH_SIZE, (ps, range) -> {
+                    ps.setLong(1, range.habitId());
+                    ps.setDate(2, Date.valueOf(range.start()));
+                    ps.setDate(3, Date.valueOf(range.end()));
+                    ps.setDate(4, Date.valueOf(range.start().minusMonths(1)));
+                    ps.setDate(5, Date.valueOf(range.end()));
+                });
+        List<PeriodRange> deleted = new ArrayList<>();
+        int i = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count > 0 || count == Statement.SUCCESS_NO_INFO) {
+                    deleted.add(ranges.get(i));
+                }
+                i++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes up to {@code limit} logs of a habit and returns how many were
+     * deleted. Each call is a short statement of its own, so purging a long
+     * history never holds one large transaction.
+     */
+    public int deleteLogsOfHabit(Long habitId, int limit) {
+        return jdbcTemplate.update(
+                "delete from habit_logs where habit_id = ? and id in" +
+                        " (select id from habit_logs where habit_id = ? limit ?)",
+                habitId, habitId, limit);
+    }
+
+    public long countLogsOfHabit(Long habitId) {
+        return jdbcTemplate.queryForObject(
+                "select count(*) from habit_logs where habit_id = ?", Long.class, habitId);
+    }
+
+    /**
+     * Up to {@code limit} logs matching the filters, ordered by habit, date and
+     * id, starting after {@code after} (null for the first chunk). Null filters
+     * are ignored. Seeks on the (habit_id, date, id) index, so each chunk costs
+     * the same however far into the export it is.
+     */
+    public List<ExportRow> findLogsForExport(Collection<Long> habitIds, LocalDate start, LocalDate end,
+                                             ExportRow after, int limit) {
+        StringBuilder sql = new StringBuilder(
+                "select l.id, l.habit_id, h.name, l.date from habit_logs l join habits h on h.id = l.habit_id" +
+                        " where h.deleted_at is null");
+        List<Object> args = new ArrayList<>();
+        if (habitIds != null) {
+            sql.append(" and l.habit_id = any (?)");
+            args.add(habitIds.toArray(new Long[0]));
+        }
+        if (start != null) {
+            sql.append(" and l.date >= ? and l.period_key >= ?");
+            args.add(Date.valueOf(start));
+            args.add(Date.valueOf(start.minusMonths(1)));
+        }
+        if (end != null) {
+            sql.append(" and l.date <= ? and l.period_key <= ?");
+            args.add(Date.valueOf(end));
+            args.add(Date.valueOf(end));
+        }
+        if (after != null) {
+            sql.append(" and (l.habit_id, l.date, l.id) > (?, ?, ?)");
+            args.add(after.habitId());
+            args.add(Date.valueOf(after.date()));
+            args.add(after.id());
+        }
+        sql.append(" order by l.habit_id, l.date, l.id limit ?");
+        args.add(limit);
+
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString());
+            for (int i = 0; i < args.size(); i++) {
+                Object arg = args.get(i);
+                if (arg instanceof Long[] ids) {
+                    ps.setArray(i + 1, con.createArrayOf("bigint", ids));
+                } else {
+                    ps.setObject(i + 1, arg);
+                }
+            }
+            return ps;
+        }, (rs, i) -> new ExportRow(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getDate(4).toLocalDate()));
+    }
+
+    /**
+     * Hands the habit and epoch day of every log of the given habits in the
+     * range to the consumer. The day is computed by PostgreSQL, so no object is
+     * created per row.
+     */
+    public void forEachLogDay(Collection<Long> habitIds, LocalDate start, LocalDate end, LogDayConsumer consumer) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "select l.habit_id, l.date - date '1970-01-01' from habit_logs l" +
+                            " where l.habit_id = any (?) and l.date between ? and ? and l.period_key between ? and ?");
+            ps.setArray(1, con.createArrayOf("bigint", habitIds.toArray(new Long[0])));
+            ps.setObject(2, Date.valueOf(start));
+            ps.setObject(3, Date.valueOf(end));
+            ps.setObject(4, Date.valueOf(start.minusMonths(1)));
+            ps.setObject(5, Date.valueOf(end));
+            return ps;
+        }, rs -> {
+            consumer.accept(rs.getLong(1), rs.getInt(2));
+        });
+    }
+
+    /**
+     * Stages a chunk of an import. Called outside a transaction, each batch
+     * commits on its own, so no connection is held between chunks.
+     */
+    public void stageImportRows(UUID importId, List<LogRow> rows) {
+        jdbcTemplate.batchUpdate(
+                "insert into habit_log_import_rows (import_id, habit_id, date, period_key) values (?, ?, ?, ?)",
+                rows, IMPORT_BATCH_SIZE, (ps, row) -> {
+                    ps.setObject(1, importId);
+                    ps.setLong(2, row.habitId());
+                    ps.setDate(3, Date.valueOf(row.date()));
+                    ps.setDate(4, Date.valueOf(row.periodKey()));
+                });
+    }
+
+    public void deleteImportRows(UUID importId) {
+        jdbcTemplate.update("delete from habit_log_import_rows where import_id = ?", importId);
+    }
+
+    /**
+     * Removes rows staged before {@code cutoff}, left behind by imports that were
+     * interrupted before they could clean up.
+     */
+    public int deleteAbandonedImportRows(Instant cutoff) {
+        return jdbcTemplate.update("delete from habit_log_import_rows where staged_at < ?",
+                Timestamp.from(cutoff));
+    }
+
+    /**
+     * Moves the staged rows into habit_logs, skipping periods that already have
+     * a log, and adds the inserted rows to habit_monthly_rollup in the same
+     * statement. Returns the number of rows actually inserted.
+     */
+    public int mergeImportStaging(UUID importId) {
+        Integer inserted = jdbcTemplate.queryForObject(
+                "with ins as (" +
+                "  insert into habit_logs (habit_id, date, period_key)" +
+                "  select habit_id, date, period_key from habit_log_import_rows where import_id = ?" +
+                "  order by habit_id, period_key" +
+                "  on conflict (habit_id, period_key) do nothing" +
+                "  returning habit_id, date)," +
+                " rollup as (" +
+                "  insert into habit_monthly_rollup (habit_id, year, month, completions)" +
+                "  select habit_id, extract(year from date)::int, extract(month from date)::int, count(*)" +
+                "  from ins group by 1, 2, 3" +
+                "  on conflict (habit_id, year, month)" +
+                "  do update set completions = habit_monthly_rollup.completions + excluded.completions)" +
+                " select count(*)::int from ins",
+                Integer.class, importId);
+        return inserted == null ? 0 : inserted;
+    }
+}
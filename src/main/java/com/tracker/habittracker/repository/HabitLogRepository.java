@@ -1,14 +1,82 @@
 package com.tracker.habittracker.repository;
 
+import com.tracker.habittracker.dto.HabitLogResponse;
 import com.tracker.habittracker.model.HabitLog;
 import com.tracker.habittracker.model.Habit;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
+/**
+ * Queries over a date range also bound period_key by {@code start - 1 month ..
+ * end}: a period never starts more than a month before any of its dates, and
+ * when habit_logs is partitioned by period_key this limits the scan to the
+ * partitions the range touches.
+ */
 public interface HabitLogRepository extends JpaRepository<HabitLog, Long> {
     List<HabitLog> findByHabitAndDate(Habit habit, LocalDate date);
     List<HabitLog> findByHabitAndDateBetween(Habit habit, LocalDate start, LocalDate end);
-    void deleteByHabit(Habit habit);
+
+    // Keyset pages of a habit's logs ordered by (date, id); both seek on ix_habit_logs_habit_date_id
+    // and select only id and date, so neither the log nor its habit is loaded
+    @Query("select new com.tracker.habittracker.dto.HabitLogResponse(l.id, l.date) from HabitLog l " +
+            "where l.habit.id = :habitId and l.date between :start and :end" +
+            " and l.periodKey between :#{#start.minusMonths(1)} and :end order by l.date, l.id")
+    List<HabitLogResponse> findPage(@Param("habitId") Long habitId,
+                                    @Param("start") LocalDate start,
+                                    @Param("end") LocalDate end,
+                                    Limit limit);
+
+    // afterDate is also the lower date bound, so the range scan starts at the cursor
+    @Query("select new com.tracker.habittracker.dto.HabitLogResponse(l.id, l.date) from HabitLog l " +
+            "where l.habit.id = :habitId and l.date between :afterDate and :end " +
+            "and l.periodKey between :#{#afterDate.minusMonths(1)} and :end " +
+            "and (l.date > :afterDate or l.id > :afterId) order by l.date, l.id")
+    List<HabitLogResponse> findPageAfter(@Param("habitId") Long habitId,
+                                         @Param("afterDate") LocalDate afterDate,
+                                         @Param("afterId") Long afterId,
+                                         @Param("end") LocalDate end,
+                                         Limit limit);
+
+    // One row per habit (including habits without logs) in a single grouped query
+    @Query("select h.id as habitId, h.name as name, h.frequency as frequency, count(l.id) as completions " +
+            "from Habit h left join HabitLog l on l.habit = h and l.date between :start and :end " +
+            "and l.periodKey between :#{#start.minusMonths(1)} and :end " +
+            "group by h.id, h.name, h.frequency")
+    List<HabitCompletionCount> countCompletionsBetween(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    @Query("select l.habit.id as habitId, count(l.id) as completions from HabitLog l " +
+            "where l.date between :start and :end and l.periodKey between :#{#start.minusMonths(1)} and :end " +
+            "group by l.habit.id")
+    List<HabitCompletionTotal> sumCompletionsBetween(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    // Logs of deleted habits linger until purged, so both filter on the habit
+    @Query("select l.habit.id as habitId, l.date as date from HabitLog l " +
+            "where l.habit.deletedAt is null and l.date between :start and :end and l.periodKey between :#{#start.minusMonths(1)} and :end " +
+            "order by l.habit.id, l.date")
+    List<HabitLogDate> findDatesBetween(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    @Query("select l.habit.id as habitId, l.date as date from HabitLog l " +
+            "where l.habit.id in :habitIds and l.habit.deletedAt is null and l.date between :start and :end " +
+            "and l.periodKey between :#{#start.minusMonths(1)} and :end order by l.habit.id, l.date")
+    List<HabitLogDate> findDatesByHabitIdsBetween(@Param("habitIds") Collection<Long> habitIds,
+                                                  @Param("start") LocalDate start,
+                                                  @Param("end") LocalDate end);
+
+    @Query("select l.date from HabitLog l where l.habit.id = :habitId and l.date between :start and :end " +
+            "and l.periodKey between :#{#start.minusMonths(1)} and :end")
+    List<LocalDate> findDatesByHabitIdBetween(@Param("habitId") Long habitId,
+                                              @Param("start") LocalDate start,
+                                              @Param("end") LocalDate end);
+
+    @Query("select l.date from HabitLog l where l.habit.id = :habitId")
+    List<LocalDate> findDatesByHabitId(@Param("habitId") Long habitId);
+
+    @Query("select l.habit.id as habitId, l.date as date from HabitLog l where l.habit.id in :habitIds")
+    List<HabitLogDate> findDatesByHabitIds(@Param("habitIds") Collection<Long> habitIds);
 }
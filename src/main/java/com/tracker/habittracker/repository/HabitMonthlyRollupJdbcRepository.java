@@ -0,0 +1,82 @@
+package com.tracker.habittracker.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Set-based maintenance of habit_monthly_rollup: recounting months from the raw
+ * logs, full rebuilds and consistency checks.
+ */
+@Repository
+public class HabitMonthlyRollupJdbcRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    // Logs of deleted habits awaiting their purge have no rollup
+    private static final String ACTUAL_COUNTS =
+            "select habit_id, extract(year from date)::int as year, extract(month from date)::int as month," +
+            " count(*) as completions from habit_logs" +
+            " where habit_id in (select id from habits where deleted_at is null) group by 1, 2, 3";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public HabitMonthlyRollupJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record HabitMonth(Long habitId, int year, int month) {
+
+        public static HabitMonth of(Long habitId, LocalDate date) {
+            return new HabitMonth(habitId, date.getYear(), date.getMonthValue());
+        }
+    }
+
+    public record Mismatch(Long habitId, int year, int month, long rollupCompletions, long actualCompletions) {}
+
+    /**
+     * Sets the rollup of each given habit month to its current count in habit_logs.
+     */
+    public void refreshMonths(Collection<HabitMonth> months) {
+        jdbcTemplate.batchUpdate(
+                "insert into habit_monthly_rollup (habit_id, year, month, completions)" +
+                " select ?, ?, ?, count(*) from habit_logs where habit_id = ? and date >= ? and date < ?" +
+                " on conflict (habit_id, year, month) do update set completions = excluded.completions",
+                months, BATCH_SIZE, (ps, m) -> {
+                    LocalDate first = LocalDate.of(m.year(), m.month(), 1);
+                    ps.setLong(1, m.habitId());
+                    ps.setInt(2, m.year());
+                    ps.setInt(3, m.month());
+                    ps.setLong(4, m.habitId());
+                    ps.setDate(5, Date.valueOf(first));
+                    ps.setDate(6, Date.valueOf(first.plusMonths(1)));
+                });
+    }
+
+    /**
+     * Replaces every rollup with counts from habit_logs and returns the number of
+     * rollup rows written.
+     */
+    public int rebuildAll() {
+        jdbcTemplate.update("delete from habit_monthly_rollup");
+        return jdbcTemplate.update("insert into habit_monthly_rollup (habit_id, year, month, completions) " +
+                ACTUAL_COUNTS);
+    }
+
+    public List<Mismatch> findMismatches() {
+        return jdbcTemplate.query(
+                "select coalesce(r.habit_id, a.habit_id) as habit_id, coalesce(r.year, a.year) as year," +
+                " coalesce(r.month, a.month) as month, coalesce(r.completions, 0) as rollup," +
+                " coalesce(a.completions, 0) as actual" +
+                " from habit_monthly_rollup r full outer join (" + ACTUAL_COUNTS + ") a" +
+                " on a.habit_id = r.habit_id and a.year = r.year and a.month = r.month" +
+                " where coalesce(r.completions, 0) <> coalesce(a.completions, 0)" +
+                " order by 1, 2, 3",
+                (rs, i) -> new Mismatch(rs.getLong("habit_id"), rs.getInt("year"), rs.getInt("month"),
+                        rs.getLong("rollup"), rs.getLong("actual")));
+    }
+}
@@ -0,0 +1,43 @@
+package com.tracker.habittracker.repository;
+
+import com.tracker.habittracker.model.HabitMonthlyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface HabitMonthlyRollupRepository extends JpaRepository<HabitMonthlyRollup, Long> {
+
+    @Query("select h.id as habitId, h.name as name, h.frequency as frequency, coalesce(r.completions, 0) as completions " +
+            "from Habit h left join HabitMonthlyRollup r on r.habitId = h.id and r.year = :year and r.month = :month")
+    List<HabitCompletionCount> findMonthlyCompletions(@Param("year") int year, @Param("month") int month);
+
+    @Query("select r.completions from HabitMonthlyRollup r " +
+            "where r.habitId = :habitId and r.year = :year and r.month = :month")
+    Optional<Long> findCompletions(@Param("habitId") Long habitId, @Param("year") int year, @Param("month") int month);
+
+    // Row comparisons let a range span years and still use the (year, month) index
+    @Query("select r.habitId as habitId, sum(r.completions) as completions from HabitMonthlyRollup r " +
+            "where (r.year, r.month) >= (:fromYear, :fromMonth) and (r.year, r.month) <= (:toYear, :toMonth) " +
+            "group by r.habitId")
+    List<HabitCompletionTotal> sumCompletionsBetweenMonths(@Param("fromYear") int fromYear,
+                                                           @Param("fromMonth") int fromMonth,
+                                                           @Param("toYear") int toYear,
+                                                           @Param("toMonth") int toMonth);
+
+    @Modifying
+    @Query(value = "insert into habit_monthly_rollup (habit_id, year, month, completions)" +
+            " values (:habitId, :year, :month, :delta)" +
+            " on conflict (habit_id, year, month)" +
+            " do update set completions = habit_monthly_rollup.completions + excluded.completions",
+            nativeQuery = true)
+    void addCompletions(@Param("habitId") Long habitId, @Param("year") int year,
+                        @Param("month") int month, @Param("delta") long delta);
+
+    @Modifying
+    @Query("delete from HabitMonthlyRollup r where r.habitId = :habitId")
+    void deleteByHabitId(@Param("habitId") Long habitId);
+}
@@ -1,9 +1,27 @@
 package com.tracker.habittracker.repository;
 
+import com.tracker.habittracker.dto.HabitSummary;
 import com.tracker.habittracker.model.Habit;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.List;
+
 @Repository
 public interface HabitRepository extends JpaRepository<Habit, Long> {
+
+    // Keyset page: habits after the given id, in id order, read straight into summaries
+    @Query("select new com.tracker.habittracker.dto.HabitSummary(h.id, h.name, h.description, h.frequency) " +
+            "from Habit h where h.id > :afterId order by h.id")
+    List<HabitSummary> findSummariesAfter(@Param("afterId") Long afterId, Limit limit);
+
+    // Hides the habit from every query; HabitPurgeService removes it with its logs later
+    @Modifying
+    @Query("update Habit h set h.deletedAt = :deletedAt where h.id = :id")
+    int markDeleted(@Param("id") Long id, @Param("deletedAt") Instant deletedAt);
 }
@@ -0,0 +1,296 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.dto.BulkMarkRequest;
+import com.tracker.habittracker.dto.BulkMarkResult;
+import com.tracker.habittracker.model.Habit;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository.LogRow;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository.PeriodRange;
+import com.tracker.habittracker.repository.HabitMonthlyRollupJdbcRepository;
+import com.tracker.habittracker.repository.HabitMonthlyRollupJdbcRepository.HabitMonth;
+import com.tracker.habittracker.repository.HabitRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Applies many mark/unmark operations in one transaction, e.g. when an offline
+ * client replays its taps. Operations are evaluated in order against the
+ * current state, so each gets the result it would have had as a single request,
+ * but only the final state of each habit period is written, as batched JDBC
+ * inserts and deletes.
+ */
+@Service
+public class BulkMarkService {
+
+    // Flushes of the write-behind buffer before giving up on a batch whose habits keep getting marked
+    private static final int MAX_FLUSH_ATTEMPTS = 3;
+
+    private final HabitRepository habitRepository;
+    private final HabitLogJdbcRepository habitLogJdbcRepository;
+    private final HabitMonthlyRollupJdbcRepository rollupJdbcRepository;
+    private final CompletionIndex completionIndex;
+    private final StreakService streakService;
+    private final DataVersions dataVersions;
+    private final HabitEventService habitEventService;
+    private final TransactionTemplate transactionTemplate;
+    // The buffer flushes through this service, hence the provider
+    private final ObjectProvider<WriteBehindBuffer> writeBehindBuffer;
+
+    public BulkMarkService(HabitRepository habitRepository,
+                           HabitLogJdbcRepository habitLogJdbcRepository,
+                           HabitMonthlyRollupJdbcRepository rollupJdbcRepository,
+                           CompletionIndex completionIndex,
+                           StreakService streakService,
+                           DataVersions dataVersions,
+                           HabitEventService habitEventService,
+                           TransactionTemplate transactionTemplate,
+                           ObjectProvider<WriteBehindBuffer> writeBehindBuffer) {
+        this.habitRepository = habitRepository;
+        this.habitLogJdbcRepository = habitLogJdbcRepository;
+        this.rollupJdbcRepository = rollupJdbcRepository;
+        this.completionIndex = completionIndex;
+        this.streakService = streakService;
+        this.dataVersions = dataVersions;
+        this.habitEventService = habitEventService;
+        this.transactionTemplate = transactionTemplate;
+        this.writeBehindBuffer = writeBehindBuffer;
+    }
+
+    private record PeriodKey(Long habitId, LocalDate periodStart) {}
+
+    private static final class PeriodState {
+        final Habit habit;
+        final boolean initiallyMarked;
+        boolean marked;
+        LocalDate markDate;
+        // Indexes of the operations on this period, in request order
+        final List<Integer> operations = new ArrayList<>();
+
+        PeriodState(Habit habit, boolean marked) {
+            this.habit = habit;
+            this.initiallyMarked = marked;
+            this.marked = marked;
+        }
+    }
+
+    /**
+     * Applies the operations in one transaction and returns one result per
+     * operation. Changes still in the {@link WriteBehindBuffer} are written first
+     * so the operations are evaluated against them. The habits'
+     * {@link CompletionIndex} locks are held from the first check until the index
+     * is updated after commit, as for single marks.
+     *
+     * @throws IllegalStateException if single marks of the habits keep being
+     *                               buffered while the buffer is flushed
+     */
+    public List<BulkMarkResult> apply(List<BulkMarkRequest.Operation> operations) {
+        Map<Long, Habit> habits = findHabits(operations);
+        WriteBehindBuffer buffer = writeBehindBuffer.getObject();
+        for (int attempt = 0; attempt < MAX_FLUSH_ATTEMPTS; attempt++) {
+            if (buffer.isEnabled()) {
+                buffer.flush();
+            }
+            List<Lock> locks = completionIndex.lockAll(habits.keySet());
+            try {
+                // A single mark may have been buffered before the locks were taken;
+                // none can be while they are held
+                if (!buffer.hasChanges(habits.keySet())) {
+                    return transactionTemplate.execute(status -> apply(operations, habits, null));
+                }
+            } finally {
+                locks.forEach(Lock::unlock);
+            }
+        }
+        throw new IllegalStateException("Buffered marks of the habits kept changing, try again");
+    }
+
+    /**
+     * Writes the changes of a {@link WriteBehindBuffer} flush, which are not
+     * evaluated against the buffer itself. {@code afterCommit} runs once they
+     * are committed and indexed.
+     */
+    List<BulkMarkResult> write(List<BulkMarkRequest.Operation> operations, Runnable afterCommit) {
+        Map<Long, Habit> habits = findHabits(operations);
+        List<Lock> locks = completionIndex.lockAll(habits.keySet());
+        try {
+            return transactionTemplate.execute(status -> apply(operations, habits, afterCommit));
+        } finally {
+            locks.forEach(Lock::unlock);
+        }
+    }
+
+    private Map<Long, Habit> findHabits(List<BulkMarkRequest.Operation> operations) {
+        return habitRepository.findAllById(operations.stream()
+                        .filter(Objects::nonNull)
+                        .map(op -> op.habitId)
+                        .filter(Objects::nonNull)
+                        .distinct()
+                        .toList())
+                .stream()
+                .collect(Collectors.toMap(Habit::getId, Function.identity()));
+    }
+
+    private List<BulkMarkResult> apply(List<BulkMarkRequest.Operation> operations, Map<Long, Habit> habits,
+                                       Runnable afterCommit) {
+        Map<PeriodKey, PeriodState> states = new LinkedHashMap<>();
+        List<BulkMarkResult> results = new ArrayList<>(operations.size());
+
+        for (int i = 0; i < operations.size(); i++) {
+            BulkMarkRequest.Operation op = operations.get(i);
+            if (op == null || op.habitId == null || op.date == null) {
+                results.add(BulkMarkResult.invalid(i, op, "habitId and date are required"));
+                continue;
+            }
+            boolean mark = "mark".equalsIgnoreCase(op.action);
+            if (!mark && !"unmark".equalsIgnoreCase(op.action)) {
+                results.add(BulkMarkResult.invalid(i, op, "Unknown action: " + op.action));
+                continue;
+            }
+            LocalDate date;
+            try {
+                date = LocalDate.parse(op.date);
+            } catch (DateTimeParseException e) {
+                results.add(BulkMarkResult.invalid(i, op, "Invalid date: " + op.date));
+                continue;
+            }
+            Habit habit = habits.get(op.habitId);
+            if (habit == null) {
+                results.add(BulkMarkResult.of(i, op, "habit_not_found"));
+                continue;
+            }
+
+            PeriodKey key = new PeriodKey(habit.getId(), habit.getFrequency().periodStart(date));
+            PeriodState state = states.computeIfAbsent(key,
+                    k -> new PeriodState(habit, completionIndex.isMarked(habit, date)));
+            state.operations.add(i);
+            results.add(BulkMarkResult.of(i, op, status(mark, state.marked)));
+            if (mark && (!state.marked || state.markDate == null)) {
+                state.markDate = date;
+            }
+            state.marked = mark;
+        }
+
+        writeNetChanges(states, operations, results);
+        if (afterCommit != null) {
+            afterCommit(afterCommit);
+        }
+        return results;
+    }
+
+    private static String status(boolean mark, boolean marked) {
+        if (mark) {
+            return marked ? "already_marked" : "marked";
+        }
+        return marked ? "unmarked" : "not_marked";
+    }
+
+    private void writeNetChanges(Map<PeriodKey, PeriodState> states, List<BulkMarkRequest.Operation> operations,
+                                 List<BulkMarkResult> results) {
+        // Every touched period is written, as the index may not know of writes by
+        // other instances; those that were already as the operations left them
+        // come back unwritten
+        List<LogRow> inserts = new ArrayList<>();
+        List<PeriodRange> deletes = new ArrayList<>();
+        states.forEach((key, state) -> {
+            if (state.marked) {
+                inserts.add(new LogRow(key.habitId(), state.markDate, key.periodStart()));
+            } else {
+                LocalDate periodEnd = state.habit.getFrequency().periodEnd(key.periodStart());
+                deletes.add(new PeriodRange(key.habitId(), key.periodStart(), periodEnd));
+            }
+        });
+        if (inserts.isEmpty() && deletes.isEmpty()) {
+            return;
+        }
+
+        Set<PeriodKey> written = new HashSet<>();
+        if (!deletes.isEmpty()) {
+            habitLogJdbcRepository.batchDeletePeriods(deletes)
+                    .forEach(range -> written.add(new PeriodKey(range.habitId(), range.start())));
+        }
+        if (!inserts.isEmpty()) {
+            habitLogJdbcRepository.batchInsert(inserts)
+                    .forEach(row -> written.add(new PeriodKey(row.habitId(), row.periodKey())));
+        }
+
+        Set<Long> changedHabits = new HashSet<>();
+        Set<HabitMonth> changedMonths = new LinkedHashSet<>();
+        states.forEach((key, state) -> {
+            if (written.contains(key) != (state.marked != state.initiallyMarked)) {
+                // The index was wrong, e.g. the period was changed by another
+                // instance; report what the operations did to the stored state instead
+                reevaluate(state, operations, results);
+            }
+            if (!written.contains(key)) {
+                return;
+            }
+            changedHabits.add(key.habitId());
+            if (state.marked) {
+                changedMonths.add(HabitMonth.of(key.habitId(), state.markDate));
+            } else {
+                changedMonths.add(HabitMonth.of(key.habitId(), key.periodStart()));
+                changedMonths.add(HabitMonth.of(key.habitId(), state.habit.getFrequency().periodEnd(key.periodStart())));
+            }
+        });
+        if (!changedHabits.isEmpty()) {
+            rollupJdbcRepository.refreshMonths(changedMonths);
+            dataVersions.bump(changedHabits);
+            habitEventService.habitsChanged(changedHabits);
+        }
+
+        // Bring the index in line once the writes are committed, including periods
+        // it had wrong; streaks of the changed habits are rebuilt on their next read
+        afterCommit(() -> states.forEach((key, state) -> {
+            if (written.contains(key) || state.marked != state.initiallyMarked) {
+                streakService.evict(key.habitId());
+            }
+            if (state.marked) {
+                completionIndex.recordMark(state.habit, key.periodStart());
+            } else {
+                completionIndex.recordUnmark(state.habit, key.periodStart());
+            }
+        }));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // Replays a period's operations from the opposite of the state they were evaluated against
+    private static void reevaluate(PeriodState state, List<BulkMarkRequest.Operation> operations,
+                                   List<BulkMarkResult> results) {
+        boolean marked = !state.initiallyMarked;
+        for (int i : state.operations) {
+            BulkMarkRequest.Operation op = operations.get(i);
+            boolean mark = "mark".equalsIgnoreCase(op.action);
+            results.set(i, BulkMarkResult.of(i, op, status(mark, marked)));
+            marked = mark;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.config.ReadWriteRoutingDataSource;
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.model.Habit;
+import com.tracker.habittracker.repository.HabitLogRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-through index of the periods each habit is completed in, held as one
+ * bit per {@link com.tracker.habittracker.model.Frequency#periodIndex} from the
+ * habit's first completed period.
+ * <p>
+ * A habit's periods are loaded from {@link HabitLogRepository} the first time
+ * they are needed and kept up to date by {@link HabitLogService}. The bitsets
+ * take at most {@code app.completion-index.max-size} in total; least recently
+ * used habits are evicted to stay under it. The index only sees writes made
+ * through this process, so callers take its answers as hints and leave the
+ * final word to the database, which other instances may have written to.
+ */
+@Component
+public class CompletionIndex {
+
+    private static final int LOCK_STRIPES = 64;
+    // Habits whose completions span more periods than this (thousands of years
+    // of days) are not indexed; their checks go to the database
+    private static final long MAX_SPAN = 1 << 24;
+
+    private final HabitLogRepository habitLogRepository;
+    private final Lock[] locks = new Lock[LOCK_STRIPES];
+    // Access-ordered, so iteration starts at the least recently used habit; guarded by itself
+    private final Map<Long, Periods> periodsByHabit = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxBytes;
+    private long bytes;
+
+    public CompletionIndex(HabitLogRepository habitLogRepository,
+                           @Value("${app.completion-index.max-size:32MB}") DataSize maxSize) {
+        this.habitLogRepository = habitLogRepository;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.maxBytes = maxSize.toBytes();
+    }
+
+    /**
+     * Completed periods of one habit, as bits offset from {@code base}.
+     */
+    private static final class Periods {
+        // Object headers, fields and the BitSet's array header
+        static final long OVERHEAD = 80;
+
+        long base;
+        BitSet bits = new BitSet();
+
+        boolean contains(long period) {
+            long offset = period - base;
+            return offset >= 0 && offset < bits.length() && bits.get((int) offset);
+        }
+
+        // False when the period is too far from the others to be held
+        boolean add(long period) {
+            if (bits.isEmpty()) {
+                bits = new BitSet();
+                base = period;
+            } else if (Math.max(period, base + bits.length() - 1) - Math.min(period, base) >= MAX_SPAN) {
+                return false;
+            } else if (period < base) {
+                int shift = (int) (base - period);
+                BitSet shifted = new BitSet(bits.length() + shift);
+                for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                    shifted.set(i + shift);
+                }
+                bits = shifted;
+                base = period;
+            }
+            bits.set((int) (period - base));
+            return true;
+        }
+
+        void remove(long period) {
+            long offset = period - base;
+            if (offset >= 0 && offset < bits.length()) {
+                bits.clear((int) offset);
+            }
+        }
+
+        long bytes() {
+            return OVERHEAD + bits.size() / 8;
+        }
+    }
+
+    /**
+     * Lock guarding the index entry of a habit. Callers hold it across the
+     * check and the write so the two cannot interleave with another request.
+     * It is a {@link Lock} rather than a monitor because it is held across JDBC
+     * calls, which would pin a virtual thread to its carrier inside synchronized.
+     */
+    public Lock lockFor(Long habitId) {
+        return locks[stripe(habitId)];
+    }
+
+    /**
+     * Takes the locks of several habits and returns them for unlocking. They are
+     * taken in stripe order, so two callers locking overlapping habits cannot
+     * deadlock, and habits sharing a stripe lock it once.
+     */
+    public List<Lock> lockAll(Collection<Long> habitIds) {
+        int[] stripes = habitIds.stream().mapToInt(CompletionIndex::stripe).distinct().sorted().toArray();
+        List<Lock> held = new ArrayList<>(stripes.length);
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+            held.add(locks[stripe]);
+        }
+        return held;
+    }
+
+    private static int stripe(Long habitId) {
+        return Math.floorMod(habitId.hashCode(), LOCK_STRIPES);
+    }
+
+    /**
+     * Whether the habit is completed in the period of {@code date}, as far as
+     * this process knows.
+     */
+    public boolean isMarked(Habit habit, LocalDate date) {
+        Lock lock = lockFor(habit.getId());
+        lock.lock();
+        try {
+            Periods periods = periods(habit);
+            if (periods == null) {
+                Frequency frequency = habit.getFrequency();
+                return !ReadWriteRoutingDataSource.readPrimary(() -> habitLogRepository.findDatesByHabitIdBetween(
+                        habit.getId(), frequency.periodStart(date), frequency.periodEnd(date))).isEmpty();
+            }
+            return periods.contains(periodIndex(habit, date));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void recordMark(Habit habit, LocalDate date) {
+        Lock lock = lockFor(habit.getId());
+        lock.lock();
+        try {
+            synchronized (periodsByHabit) {
+                Periods periods = periodsByHabit.get(habit.getId());
+                if (periods != null) {
+                    long before = periods.bytes();
+                    if (periods.add(periodIndex(habit, date))) {
+                        resized(periods.bytes() - before);
+                    } else {
+                        remove(habit.getId());
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void recordUnmark(Habit habit, LocalDate date) {
+        Lock lock = lockFor(habit.getId());
+        lock.lock();
+        try {
+            synchronized (periodsByHabit) {
+                Periods periods = periodsByHabit.get(habit.getId());
+                if (periods != null) {
+                    periods.remove(periodIndex(habit, date));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void evict(Long habitId) {
+        Lock lock = lockFor(habitId);
+        lock.lock();
+        try {
+            synchronized (periodsByHabit) {
+                remove(habitId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Caller holds lockFor(habit), so a habit is never loaded twice concurrently.
+    // Null when the habit cannot be indexed.
+    private Periods periods(Habit habit) {
+        synchronized (periodsByHabit) {
+            Periods periods = periodsByHabit.get(habit.getId());
+            if (periods != null) {
+                return periods;
+            }
+        }
+        Periods periods = new Periods();
+        for (LocalDate date : ReadWriteRoutingDataSource.readPrimary(
+                () -> habitLogRepository.findDatesByHabitId(habit.getId()))) {
+            if (!periods.add(periodIndex(habit, date))) {
+                return null;
+            }
+        }
+        synchronized (periodsByHabit) {
+            periodsByHabit.put(habit.getId(), periods);
+            resized(periods.bytes());
+        }
+        return periods;
+    }
+
+    // Caller holds the periodsByHabit monitor
+    private void resized(long delta) {
+        bytes += delta;
+        Iterator<Map.Entry<Long, Periods>> eldest = periodsByHabit.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().bytes();
+            eldest.remove();
+        }
+    }
+
+    // Caller holds the periodsByHabit monitor
+    private void remove(Long habitId) {
+        Periods periods = periodsByHabit.remove(habitId);
+        if (periods != null) {
+            bytes -= periods.bytes();
+        }
+    }
+
+    private static long periodIndex(Habit habit, LocalDate date) {
+        return habit.getFrequency().periodIndex(date);
+    }
+}
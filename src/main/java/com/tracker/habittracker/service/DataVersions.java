@@ -0,0 +1,68 @@
+package com.tracker.habittracker.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Change counters behind the ETags of the read endpoints: a global version that
+ * every write bumps and one per habit for writes touching its logs. A bump made
+ * inside a transaction waits for the commit, and readers take the version before
+ * computing, so a response never carries a version newer than its data. Versions
+ * restart with the application, so the ETags also carry its start time.
+ */
+@Component
+public class DataVersions {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong global = new AtomicLong();
+    private final Map<Long, AtomicLong> habits = new ConcurrentHashMap<>();
+
+    public long global() {
+        return global.get();
+    }
+
+    public long habit(Long habitId) {
+        AtomicLong version = habits.get(habitId);
+        return version == null ? 0 : version.get();
+    }
+
+    // Records a change to the given habits' logs, or just to the habit list when empty
+    public void bump(Collection<Long> habitIds) {
+        List<Long> changed = List.copyOf(habitIds);
+        Runnable apply = () -> {
+            changed.forEach(habitId -> habits.computeIfAbsent(habitId, id -> new AtomicLong()).incrementAndGet());
+            global.incrementAndGet();
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply.run();
+            }
+        });
+    }
+
+    public void bump(Long habitId) {
+        bump(List.of(habitId));
+    }
+
+    /**
+     * Weak ETag of a response derived from the given versions and parameters.
+     */
+    public String etag(Object... parts) {
+        return Stream.of(parts).map(String::valueOf)
+                .collect(Collectors.joining("-", "W/\"" + epoch + "-", "\""));
+    }
+}
@@ -0,0 +1,109 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.dto.RollingSeries;
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.model.Habit;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rolling completion rates for trend lines. The logs of all requested habits
+ * are read in one query into a per-day count array per habit, which becomes a
+ * prefix sum, so the completions of any window are a single subtraction. The
+ * possible completions come from {@link Frequency#periodsBetween}, as in range
+ * stats. Habits are computed in parallel.
+ */
+@Service
+public class HabitAnalyticsService {
+
+    private final HabitService habitService;
+    private final HabitLogJdbcRepository habitLogJdbcRepository;
+    private final WriteBehindBuffer writeBehindBuffer;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public HabitAnalyticsService(HabitService habitService, HabitLogJdbcRepository habitLogJdbcRepository,
+                                 WriteBehindBuffer writeBehindBuffer, PlatformTransactionManager transactionManager) {
+        this.habitService = habitService;
+        this.habitLogJdbcRepository = habitLogJdbcRepository;
+        this.writeBehindBuffer = writeBehindBuffer;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Rates of each window for every day from {@code start} to {@code end}, for
+     * the given habits or all of them when {@code habitIds} is null.
+     */
+    public List<RollingSeries> getRollingSeries(Collection<Long> habitIds, LocalDate start, LocalDate end,
+                                                List<Integer> windows) {
+        int longestWindow = windows.stream().mapToInt(Integer::intValue).max().orElseThrow();
+        LocalDate from = start.minusDays(longestWindow - 1);
+        int fromDay = (int) from.toEpochDay();
+        int days = (int) (end.toEpochDay() - fromDay + 1);
+
+        List<Habit> habits = habitService.getAllHabits().stream()
+                .filter(habit -> habitIds == null || habitIds.contains(habit.getId()))
+                .toList();
+        if (habits.isEmpty()) {
+            return List.of();
+        }
+        // counts[i + 1] is the number of logs on day from + i; counts[0] stays 0 for the prefix sum
+        Map<Long, int[]> counts = new HashMap<>();
+        habits.forEach(habit -> counts.put(habit.getId(), new int[days + 1]));
+        // Only the logs are read in the read-only transaction; cache loads must not reuse its replica connection
+        readOnlyTransaction.executeWithoutResult(status ->
+                habitLogJdbcRepository.forEachLogDay(counts.keySet(), from, end, (habitId, epochDay) -> {
+                    int[] habitCounts = counts.get(habitId);
+                    if (habitCounts != null) {
+                        habitCounts[epochDay - fromDay + 1]++;
+                    }
+                }));
+        if (writeBehindBuffer.isEnabled()) {
+            for (WriteBehindBuffer.Change change : writeBehindBuffer.changesBetween(from, end)) {
+                int[] habitCounts = counts.get(change.habit().getId());
+                if (habitCounts != null) {
+                    habitCounts[(int) change.date().toEpochDay() - fromDay + 1] += change.insert() ? 1 : -1;
+                }
+            }
+        }
+
+        return habits.parallelStream()
+                .map(habit -> series(habit, counts.get(habit.getId()), fromDay, start, end, windows))
+                .toList();
+    }
+
+    static RollingSeries series(Habit habit, int[] counts, int fromDay, LocalDate start, LocalDate end,
+                                List<Integer> windows) {
+        int[] prefix = counts;
+        for (int i = 1; i < prefix.length; i++) {
+            prefix[i] += prefix[i - 1];
+        }
+        Frequency frequency = habit.getFrequency();
+        int startDay = (int) start.toEpochDay();
+        int length = (int) (end.toEpochDay() - startDay + 1);
+
+        Map<Integer, double[]> rates = new LinkedHashMap<>();
+        for (int window : windows) {
+            double[] series = new double[length];
+            for (int i = 0; i < length; i++) {
+                int day = startDay + i;
+                // prefix[day - fromDay + 1] counts logs up to and including day
+                int completions = prefix[day - fromDay + 1] - prefix[day - window - fromDay + 1];
+                long possible = frequency.periodsBetween(LocalDate.ofEpochDay(day - window + 1),
+                        LocalDate.ofEpochDay(day));
+                series[i] = possible == 0 ? 0.0 : (double) completions / possible;
+            }
+            rates.put(window, series);
+        }
+        return new RollingSeries(habit.getId(), habit.getName(), frequency, start, end, rates);
+    }
+}
@@ -0,0 +1,273 @@
+package com.tracker.habittracker.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tracker.habittracker.dto.HabitChangeEvent;
+import com.tracker.habittracker.model.Habit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes committed changes to Server-Sent Events subscribers so clients need
+ * not poll. Each event is serialized once and queued per subscriber; a virtual
+ * thread drains a queue only while it has events, so an idle connection holds
+ * no thread and an empty queue. A subscriber whose queue passes
+ * {@code app.events.buffer-size}, heartbeats included, is too slow and is
+ * disconnected. Missed events are not replayed; clients reload on (re)connect.
+ * Completion counts are read on a sender thread, one change at a time in commit
+ * order, so writers never wait for them.
+ */
+@Service
+public class HabitEventService {
+
+    private static final Logger log = LoggerFactory.getLogger(HabitEventService.class);
+
+    private static final Set<DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("heartbeat").build();
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final Queue<Set<DataWithMediaType>> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicBoolean draining = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    private record Completion(Habit habit, LocalDate date, boolean completed) {}
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // Committed completion changes waiting for their month count
+    private final Queue<Completion> completions = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean counting = new AtomicBoolean();
+    private final ExecutorService senders;
+    // Looked up on first use: the stats service reads the write-behind buffer, which publishes through this one
+    private final ObjectProvider<HabitStatsService> habitStatsService;
+    private final ObjectMapper objectMapper;
+    private final int maxSubscribers;
+    private final int bufferSize;
+    private final Duration timeout;
+    private final Counter evictions;
+
+    @Autowired
+    public HabitEventService(ObjectProvider<HabitStatsService> habitStatsService, ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.events.max-subscribers:10000}") int maxSubscribers,
+                             @Value("${app.events.buffer-size:32}") int bufferSize,
+                             @Value("${app.events.timeout:30m}") Duration timeout) {
+        this(habitStatsService, objectMapper, meterRegistry, maxSubscribers, bufferSize, timeout,
+                Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    HabitEventService(ObjectProvider<HabitStatsService> habitStatsService, ObjectMapper objectMapper,
+                      MeterRegistry meterRegistry, int maxSubscribers, int bufferSize, Duration timeout,
+                      ExecutorService senders) {
+        this.senders = senders;
+        this.habitStatsService = habitStatsService;
+        this.objectMapper = objectMapper;
+        this.maxSubscribers = maxSubscribers;
+        this.bufferSize = bufferSize;
+        this.timeout = timeout;
+        this.evictions = Counter.builder("habit.events.evictions")
+                .description("Event subscribers disconnected for falling behind")
+                .register(meterRegistry);
+        Gauge.builder("habit.events.subscribers", subscribers, Set::size)
+                .description("Open event stream connections")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream for one client. It starts with a heartbeat so the
+     * response is committed right away.
+     */
+    public SseEmitter subscribe() {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new IllegalStateException("Too many event subscribers");
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        offer(subscriber, HEARTBEAT);
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Announces a mark or unmark of {@code date} with the habit's completions in
+     * that month. The count is only read when someone is listening.
+     */
+    public void completionChanged(Habit habit, LocalDate date, boolean completed) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        afterCommit(() -> {
+            completions.add(new Completion(habit, date, completed));
+            if (counting.compareAndSet(false, true)) {
+                senders.execute(this::countCompletions);
+            }
+        });
+    }
+
+    public void habitAdded(Long habitId) {
+        publish(HabitChangeEvent.habitAdded(habitId));
+    }
+
+    public void habitDeleted(Long habitId) {
+        publish(HabitChangeEvent.habitDeleted(habitId));
+    }
+
+    public void habitsChanged(Collection<Long> habitIds) {
+        publish(HabitChangeEvent.habitsChanged(List.copyOf(habitIds)));
+    }
+
+    @Scheduled(fixedDelayString = "${app.events.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        subscribers.forEach(subscriber -> offer(subscriber, HEARTBEAT));
+    }
+
+    @PreDestroy
+    public void close() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+        senders.shutdownNow();
+    }
+
+    private void publish(HabitChangeEvent event) {
+        if (!subscribers.isEmpty()) {
+            afterCommit(() -> broadcast(event));
+        }
+    }
+
+    // Inside a transaction the event waits for the commit, so rolled back writes are never announced
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void broadcast(HabitChangeEvent event) {
+        Set<DataWithMediaType> data;
+        try {
+            data = SseEmitter.event().name(event.type()).data(objectMapper.writeValueAsString(event)).build();
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        subscribers.forEach(subscriber -> offer(subscriber, data));
+    }
+
+    private void countCompletions() {
+        try {
+            Completion completion;
+            while ((completion = completions.poll()) != null) {
+                if (!subscribers.isEmpty()) {
+                    announce(completion);
+                }
+            }
+        } finally {
+            counting.set(false);
+        }
+        // A change committed while this run was finishing still needs counting
+        if (!completions.isEmpty() && counting.compareAndSet(false, true)) {
+            senders.execute(this::countCompletions);
+        }
+    }
+
+    private void announce(Completion completion) {
+        Habit habit = completion.habit();
+        LocalDate date = completion.date();
+        int count;
+        try {
+            count = habitStatsService.getObject().getMonthCompletions(
+                    habit.getId(), date.getYear(), date.getMonthValue());
+        } catch (RuntimeException e) {
+            log.warn("Could not count completions of habit {} for its change event", habit.getId(), e);
+            return;
+        }
+        broadcast(HabitChangeEvent.completion(habit.getId(), completion.completed(), date,
+                habit.getFrequency().periodStart(date), count));
+    }
+
+    private void offer(Subscriber subscriber, Set<DataWithMediaType> data) {
+        if (subscriber.queued.incrementAndGet() > bufferSize) {
+            evict(subscriber);
+            return;
+        }
+        subscriber.queue.add(data);
+        if (subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            Set<DataWithMediaType> data;
+            while ((data = subscriber.queue.poll()) != null) {
+                subscriber.queued.decrementAndGet();
+                subscriber.emitter.send(data);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client is gone; the container reports the error to the emitter
+            subscribers.remove(subscriber);
+            return;
+        } finally {
+            subscriber.draining.set(false);
+        }
+        // An event queued while this drain was finishing still needs a sender
+        if (!subscriber.queue.isEmpty() && subscribers.contains(subscriber)
+                && subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void evict(Subscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        evictions.increment();
+        subscriber.queue.clear();
+        // complete() waits for a send in progress, so keep it off the publishing thread
+        senders.execute(subscriber.emitter::complete);
+    }
+}
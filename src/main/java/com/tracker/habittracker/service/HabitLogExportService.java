@@ -0,0 +1,115 @@
+package com.tracker.habittracker.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository.ExportRow;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes habit logs to an output stream in keyset chunks, so memory use does
+ * not depend on how many rows are exported. Each chunk is read in its own short
+ * transaction and written after it, so a slow download does not hold a pooled
+ * connection. Logs changed during the export may or may not be included.
+ */
+@Service
+public class HabitLogExportService {
+
+    static final int CHUNK_SIZE = 1000;
+
+    private final HabitLogJdbcRepository habitLogJdbcRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public HabitLogExportService(HabitLogJdbcRepository habitLogJdbcRepository, ObjectMapper objectMapper,
+                                 PlatformTransactionManager transactionManager) {
+        this.habitLogJdbcRepository = habitLogJdbcRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public void export(LogFileFormat format, Collection<Long> habitIds, LocalDate start, LocalDate end, OutputStream out)
+            throws IOException {
+        if (format == LogFileFormat.CSV) {
+            exportCsv(habitIds, start, end, out);
+        } else {
+            exportNdjson(habitIds, start, end, out);
+        }
+    }
+
+    private void exportNdjson(Collection<Long> habitIds, LocalDate start, LocalDate end, OutputStream out)
+            throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            forEachLog(habitIds, start, end, row -> {
+                generator.writeStartObject();
+                generator.writeNumberField("id", row.id());
+                generator.writeNumberField("habitId", row.habitId());
+                generator.writeStringField("habitName", row.habitName());
+                generator.writeStringField("date", row.date().toString());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            });
+        }
+    }
+
+    private void exportCsv(Collection<Long> habitIds, LocalDate start, LocalDate end, OutputStream out)
+            throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            writer.write("id,habit_id,habit_name,date\n");
+            forEachLog(habitIds, start, end, row -> {
+                writer.write(Long.toString(row.id()));
+                writer.write(',');
+                writer.write(Long.toString(row.habitId()));
+                writer.write(',');
+                writer.write(csvField(row.habitName()));
+                writer.write(',');
+                writer.write(row.date().toString());
+                writer.write('\n');
+            });
+        }
+    }
+
+    private void forEachLog(Collection<Long> habitIds, LocalDate start, LocalDate end, RowWriter writer)
+            throws IOException {
+        ExportRow last = null;
+        List<ExportRow> chunk;
+        do {
+            ExportRow after = last;
+            chunk = readOnlyTransaction.execute(status ->
+                    habitLogJdbcRepository.findLogsForExport(habitIds, start, end, after, CHUNK_SIZE));
+            for (ExportRow row : chunk) {
+                writer.write(row);
+                last = row;
+            }
+        } while (chunk.size() == CHUNK_SIZE);
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ExportRow row) throws IOException;
+    }
+
+    static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,337 @@
+package com.tracker.habittracker.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tracker.habittracker.dto.ImportResult;
+import com.tracker.habittracker.model.Habit;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository.LogRow;
+import com.tracker.habittracker.repository.HabitRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Imports historical completions from a CSV or NDJSON stream, e.g. when moving
+ * a user over from another tracker. The input is parsed line by line, habits are
+ * resolved once up front and only one log per habit period is kept. Rows are
+ * staged in large JDBC batches while the upload is read, each committing on its
+ * own, so a slow upload holds neither a connection nor a transaction. Only the
+ * merge into habit_logs, together with the monthly rollups, runs in a
+ * transaction, as a single statement.
+ *
+ * <p>CSV rows are {@code habit,date} where habit is an id or a name; a header
+ * row naming the columns (habit_id, habit or habit_name, and date) is optional,
+ * so files from the export endpoint can be imported as-is. NDJSON objects carry
+ * {@code habitId}, {@code habit} or {@code habitName} plus {@code date}.
+ */
+@Service
+public class HabitLogImportService {
+
+    private static final int CHUNK_SIZE = 5000;
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final Duration ABANDONED_AFTER = Duration.ofDays(1);
+
+    private final HabitRepository habitRepository;
+    private final HabitLogJdbcRepository habitLogJdbcRepository;
+    private final CompletionIndex completionIndex;
+    private final StreakService streakService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final DataVersions dataVersions;
+    private final HabitEventService habitEventService;
+    private final WriteBehindBuffer writeBehindBuffer;
+
+    public HabitLogImportService(HabitRepository habitRepository, HabitLogJdbcRepository habitLogJdbcRepository,
+                                 CompletionIndex completionIndex, StreakService streakService,
+                                 ObjectMapper objectMapper, TransactionTemplate transactionTemplate,
+                                 DataVersions dataVersions, HabitEventService habitEventService,
+                                 WriteBehindBuffer writeBehindBuffer) {
+        this.habitRepository = habitRepository;
+        this.habitLogJdbcRepository = habitLogJdbcRepository;
+        this.completionIndex = completionIndex;
+        this.streakService = streakService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.dataVersions = dataVersions;
+        this.habitEventService = habitEventService;
+        this.writeBehindBuffer = writeBehindBuffer;
+    }
+
+    private record ParsedLine(String habit, String date) {}
+
+    /**
+     * State of one import run. Only the periods seen so far and the current
+     * chunk are held in memory, never the whole input.
+     */
+    private final class ImportRun {
+        final UUID id = UUID.randomUUID();
+        final Map<Long, Habit> habitsById = new HashMap<>();
+        final Map<String, Habit> habitsByName = new HashMap<>();
+        final Set<String> ambiguousNames = new HashSet<>();
+        final Map<Long, Set<LocalDate>> seenPeriods = new HashMap<>();
+        final List<LogRow> chunk = new ArrayList<>(CHUNK_SIZE);
+        final List<String> errors = new ArrayList<>();
+        long staged;
+        long duplicates;
+        long rejected;
+
+        ImportRun(List<Habit> habits) {
+            for (Habit habit : habits) {
+                habitsById.put(habit.getId(), habit);
+                String name = normalizeName(habit.getName());
+                if (name != null && habitsByName.put(name, habit) != null) {
+                    ambiguousNames.add(name);
+                }
+            }
+        }
+
+        void accept(long lineNumber, ParsedLine line) {
+            if (line.habit() == null || line.habit().isBlank() || line.date() == null) {
+                reject(lineNumber, "habit and date are required");
+                return;
+            }
+            Habit habit = resolve(line.habit().trim());
+            if (habit == null) {
+                String name = normalizeName(line.habit());
+                reject(lineNumber, ambiguousNames.contains(name)
+                        ? "ambiguous habit name '" + line.habit().trim() + "'"
+                        : "unknown habit '" + line.habit().trim() + "'");
+                return;
+            }
+            LocalDate date;
+            try {
+                date = LocalDate.parse(line.date().trim());
+            } catch (DateTimeParseException e) {
+                reject(lineNumber, "invalid date '" + line.date() + "'");
+                return;
+            }
+            LocalDate periodKey = habit.getFrequency().periodStart(date);
+            if (!seenPeriods.computeIfAbsent(habit.getId(), id -> new HashSet<>()).add(periodKey)) {
+                duplicates++;
+                return;
+            }
+            chunk.add(new LogRow(habit.getId(), date, periodKey));
+            if (chunk.size() >= CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        Habit resolve(String reference) {
+            if (!reference.isEmpty() && reference.length() <= 18 && reference.chars().allMatch(Character::isDigit)) {
+                Habit habit = habitsById.get(Long.parseLong(reference));
+                if (habit != null) {
+                    return habit;
+                }
+            }
+            String name = normalizeName(reference);
+            return ambiguousNames.contains(name) ? null : habitsByName.get(name);
+        }
+
+        void reject(long lineNumber, String reason) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("line " + lineNumber + ": " + reason);
+            }
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            habitLogJdbcRepository.stageImportRows(id, chunk);
+            staged += chunk.size();
+            chunk.clear();
+        }
+    }
+
+    public ImportResult importLogs(LogFileFormat format, InputStream in) throws IOException {
+        // Buffered marks and unmarks are written first, so the merge skips exactly
+        // the periods completed before the import
+        if (writeBehindBuffer.isEnabled()) {
+            writeBehindBuffer.flush();
+        }
+        habitLogJdbcRepository.deleteAbandonedImportRows(Instant.now().minus(ABANDONED_AFTER));
+        ImportRun run = new ImportRun(habitRepository.findAll());
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        long inserted = 0;
+        try {
+            if (format == LogFileFormat.CSV) {
+                readCsv(reader, run);
+            } else {
+                readNdjson(reader, run);
+            }
+            run.flush();
+            if (run.staged > 0) {
+                inserted = merge(run);
+            }
+        } finally {
+            // Also clears the chunks of an upload that failed halfway
+            habitLogJdbcRepository.deleteImportRows(run.id);
+        }
+
+        if (inserted > 0) {
+            dataVersions.bump(run.seenPeriods.keySet());
+            habitEventService.habitsChanged(run.seenPeriods.keySet());
+        }
+        return new ImportResult(inserted, run.duplicates + (run.staged - inserted), run.rejected,
+                List.copyOf(run.errors));
+    }
+
+    // Holds the habits' index locks from the merge until their indexed periods and
+    // streaks are evicted, so no single mark is checked against the pre-import state
+    // in between; both are reloaded on next use
+    private long merge(ImportRun run) {
+        List<Lock> locks = completionIndex.lockAll(run.seenPeriods.keySet());
+        try {
+            long inserted = transactionTemplate.execute(
+                    status -> (long) habitLogJdbcRepository.mergeImportStaging(run.id));
+            if (inserted > 0) {
+                run.seenPeriods.keySet().forEach(habitId -> {
+                    completionIndex.evict(habitId);
+                    streakService.evict(habitId);
+                });
+            }
+            return inserted;
+        } finally {
+            locks.forEach(Lock::unlock);
+        }
+    }
+
+    private void readCsv(BufferedReader reader, ImportRun run) throws IOException {
+        int habitColumn = 0;
+        int dateColumn = 1;
+        boolean first = true;
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = splitCsvLine(line);
+            if (first && fields != null) {
+                first = false;
+                List<String> header = fields.stream().map(f -> f.trim().toLowerCase(Locale.ROOT)).toList();
+                if (header.contains("date")) {
+                    dateColumn = header.indexOf("date");
+                    habitColumn = firstIndexOf(header, "habit_id", "habit", "habit_name");
+                    if (habitColumn < 0) {
+                        throw new IllegalArgumentException("CSV header has no habit_id, habit or habit_name column");
+                    }
+                    continue;
+                }
+            }
+            if (fields == null || fields.size() <= Math.max(habitColumn, dateColumn)) {
+                run.reject(lineNumber, "malformed row");
+                continue;
+            }
+            run.accept(lineNumber, new ParsedLine(fields.get(habitColumn), fields.get(dateColumn)));
+        }
+    }
+
+    private void readNdjson(BufferedReader reader, ImportRun run) throws IOException {
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(line);
+            } catch (JsonProcessingException e) {
+                run.reject(lineNumber, "malformed JSON");
+                continue;
+            }
+            if (!node.isObject()) {
+                run.reject(lineNumber, "malformed JSON");
+                continue;
+            }
+            String habit = firstText(node, "habitId", "habit", "habitName");
+            run.accept(lineNumber, new ParsedLine(habit, firstText(node, "date")));
+        }
+    }
+
+    /**
+     * Splits a CSV line, honouring double-quoted fields with "" escapes. Returns
+     * null when a quoted field is not closed on the same line.
+     */
+    static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static int firstIndexOf(List<String> header, String... names) {
+        for (String name : names) {
+            int index = header.indexOf(name);
+            if (index >= 0) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static String firstText(JsonNode node, String... fields) {
+        for (String field : fields) {
+            JsonNode value = node.get(field);
+            if (value != null && !value.isNull()) {
+                return value.asText();
+            }
+        }
+        return null;
+    }
+
+    private static String normalizeName(String name) {
+        return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
+}
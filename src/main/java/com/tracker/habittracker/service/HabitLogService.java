@@ -1,87 +1,310 @@
 package com.tracker.habittracker.service;
 
+import com.tracker.habittracker.dto.CompletionCalendar;
+import com.tracker.habittracker.dto.HabitLogResponse;
+import com.tracker.habittracker.dto.KeysetPage;
+import com.tracker.habittracker.model.Frequency;
 import com.tracker.habittracker.model.Habit;
 import com.tracker.habittracker.model.HabitLog;
+import com.tracker.habittracker.repository.HabitLogDate;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository.UpsertResult;
 import com.tracker.habittracker.repository.HabitLogRepository;
+import com.tracker.habittracker.repository.HabitMonthlyRollupRepository;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
-import java.time.DayOfWeek;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
 
 @Service
 public class HabitLogService {
 
+    // Keeps the IN list well below the driver's bind parameter limit
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
     private final HabitLogRepository habitLogRepository;
+    private final HabitLogJdbcRepository habitLogJdbcRepository;
+    private final HabitMonthlyRollupRepository rollupRepository;
+    private final CompletionIndex completionIndex;
+    private final StreakService streakService;
+    private final TransactionTemplate transactionTemplate;
+    private final WriteBehindBuffer writeBehindBuffer;
+    private final DataVersions dataVersions;
+    private final HabitEventService habitEventService;
 
-    public HabitLogService(HabitLogRepository habitLogRepository) {
+    public HabitLogService(HabitLogRepository habitLogRepository, HabitLogJdbcRepository habitLogJdbcRepository,
+                           HabitMonthlyRollupRepository rollupRepository, CompletionIndex completionIndex,
+                           StreakService streakService, TransactionTemplate transactionTemplate,
+                           WriteBehindBuffer writeBehindBuffer, DataVersions dataVersions,
+                           HabitEventService habitEventService) {
         this.habitLogRepository = habitLogRepository;
+        this.habitLogJdbcRepository = habitLogJdbcRepository;
+        this.rollupRepository = rollupRepository;
+        this.completionIndex = completionIndex;
+        this.streakService = streakService;
+        this.transactionTemplate = transactionTemplate;
+        this.writeBehindBuffer = writeBehindBuffer;
+        this.dataVersions = dataVersions;
+        this.habitEventService = habitEventService;
     }
 
+    @Timed(value = "habit.logs.mark", histogram = true)
     public HabitLog markHabit(Habit habit) {
         return markHabitOnDate(habit, LocalDate.now());
     }
 
+    @Timed(value = "habit.logs.mark", histogram = true)
     public HabitLog markHabitOnDate(Habit habit, LocalDate date) {
-        LocalDate start;
-        LocalDate end;
-
-        switch (habit.getFrequency()) {
-            case DAILY:
-                start = date;
-                end = date;
-                break;
-            case WEEKLY:
-                start = date.with(DayOfWeek.MONDAY);
-                end = date.with(DayOfWeek.SUNDAY);
-                break;
-            case MONTHLY:
-                start = date.withDayOfMonth(1);
-                end = date.withDayOfMonth(date.lengthOfMonth());
-                break;
-            default:
-                start = date;
-                end = date;
-        }
-
-        List<HabitLog> existing = habitLogRepository.findByHabitAndDateBetween(habit, start, end);
-        if (!existing.isEmpty()) {
-            return existing.get(0);
-        }
-
-        HabitLog log = new HabitLog(habit, date);
-        return habitLogRepository.save(log);
+        if (writeBehindBuffer.isEnabled()) {
+            Optional<LocalDate> completed = writeBehindBuffer.mark(habit, date);
+            completed.ifPresent(completedOn -> {
+                dataVersions.bump(habit.getId());
+                habitEventService.completionChanged(habit, completedOn, true);
+            });
+            return new HabitLog(habit, completed.orElse(date));
+        }
+        Lock lock = completionIndex.lockFor(habit.getId());
+        lock.lock();
+        try {
+            UpsertResult result = transactionTemplate.execute(status -> {
+                UpsertResult upsert = habitLogJdbcRepository.insertIfAbsent(
+                        habit.getId(), date, habit.getFrequency().periodStart(date));
+                if (upsert.inserted()) {
+                    rollupRepository.addCompletions(habit.getId(), date.getYear(), date.getMonthValue(), 1);
+                }
+                return upsert;
+            });
+            completionIndex.recordMark(habit, date);
+            if (result.inserted()) {
+                streakService.recordMark(habit.getId(), habit.getFrequency(), date);
+                dataVersions.bump(habit.getId());
+                habitEventService.completionChanged(habit, result.date(), true);
+            }
+
+            HabitLog log = new HabitLog(habit, result.date());
+            log.setId(result.id());
+            return log;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * One keyset page of a habit's logs in the range, ordered by (date, id).
+     * {@code after} is the {@code nextCursor} of the previous page, or null for
+     * the first one. Buffered changes are merged before the page is cut, so it
+     * holds at most {@code limit} logs.
+     */
+    @Transactional(readOnly = true)
+    @Timed(value = "habit.logs.read", histogram = true)
+    public KeysetPage<HabitLogResponse> getHabitLogs(Habit habit, LocalDate start, LocalDate end, String after,
+                                                     int limit) {
+        LogCursor cursor = after == null ? null : LogCursor.parse(after);
+        boolean first = cursor == null || cursor.date().isBefore(start);
+        List<WriteBehindBuffer.Change> changes = pendingChanges(start, end).stream()
+                .filter(change -> change.habit().getId().equals(habit.getId()))
+                .toList();
+        // Each buffered unmark can hide one fetched log; fetch that many more
+        int fetch = limit + 1 + (int) changes.stream().filter(change -> !change.insert()).count();
+        List<HabitLogResponse> rows = first
+                ? habitLogRepository.findPage(habit.getId(), start, end, Limit.of(fetch))
+                : habitLogRepository.findPageAfter(habit.getId(), cursor.date(), cursor.id(), end, Limit.of(fetch));
+
+        List<HabitLogResponse> merged = rows;
+        if (!changes.isEmpty()) {
+            merged = new ArrayList<>(rows);
+            for (WriteBehindBuffer.Change change : changes) {
+                if (!change.insert()) {
+                    merged.removeIf(log -> log.date().equals(change.date()));
+                } else if (first || cursor.precedesBuffered(change.date())) {
+                    merged.add(new HabitLogResponse(null, change.date()));
+                }
+            }
+            // Buffered marks have no id and sort after the logs of their date
+            merged.sort(Comparator.comparing(HabitLogResponse::date)
+                    .thenComparing(HabitLogResponse::id, Comparator.nullsLast(Comparator.naturalOrder())));
+        }
+        boolean more = merged.size() > limit;
+        List<HabitLogResponse> page = more ? merged.subList(0, limit) : merged;
+        return new KeysetPage<>(page, more ? LogCursor.of(page.get(limit - 1)).toString() : null);
+    }
+
+    /**
+     * Position of a log in (date, id) order, written as {@code <date>_<id>}.
+     */
+    record LogCursor(LocalDate date, long id) {
+
+        /** Id standing in for a buffered mark, which is not written yet. */
+        static final long BUFFERED = Long.MAX_VALUE;
+
+        static LogCursor of(HabitLogResponse log) {
+            return new LogCursor(log.date(), log.id() == null ? BUFFERED : log.id());
+        }
+
+        /** Whether a buffered mark on {@code date} sorts after this position. */
+        boolean precedesBuffered(LocalDate date) {
+            return date.isAfter(this.date) || date.equals(this.date) && id != BUFFERED;
+        }
+
+        static LogCursor parse(String value) {
+            int separator = value.indexOf('_');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + value);
+            }
+            try {
+                return new LogCursor(LocalDate.parse(value.substring(0, separator)),
+                        Long.parseLong(value.substring(separator + 1)));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + value, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return date + "_" + id;
+        }
+    }
+
+    /**
+     * Completed dates per habit id for the given range. When {@code habitIds} is
+     * null or empty every habit with logs in the range is returned; otherwise each
+     * requested id is present, with an empty list if it has no logs.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, List<LocalDate>> getCompletedDates(List<Long> habitIds, LocalDate start, LocalDate end) {
+        Map<Long, List<LocalDate>> result = new LinkedHashMap<>();
+        if (habitIds != null) {
+            habitIds.forEach(id -> result.put(id, new ArrayList<>()));
+        }
+        for (HabitLogDate row : findDates(habitIds, start, end)) {
+            result.computeIfAbsent(row.getHabitId(), k -> new ArrayList<>()).add(row.getDate());
+        }
+        for (WriteBehindBuffer.Change change : pendingChanges(start, end)) {
+            Long habitId = change.habit().getId();
+            if (!includes(habitIds, habitId)) {
+                continue;
+            }
+            List<LocalDate> dates = result.computeIfAbsent(habitId, k -> new ArrayList<>());
+            if (change.insert()) {
+                dates.add(change.date());
+                dates.sort(null);
+            } else {
+                dates.remove(change.date());
+            }
+        }
+        return result;
+    }
+
+    @Transactional(readOnly = true)
+    public CompletionCalendar getCalendar(Habit habit, LocalDate start, LocalDate end) {
+        CompletionCalendar calendar = new CompletionCalendar(start, end);
+        for (LocalDate date : habitLogRepository.findDatesByHabitIdBetween(habit.getId(), start, end)) {
+            calendar.mark(date);
+        }
+        for (WriteBehindBuffer.Change change : pendingChanges(start, end)) {
+            if (change.habit().getId().equals(habit.getId())) {
+                apply(calendar, change);
+            }
+        }
+        return calendar;
+    }
+
+    /**
+     * Calendars per habit id, with the same id semantics as {@link #getCompletedDates}.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, CompletionCalendar> getCalendars(List<Long> habitIds, LocalDate start, LocalDate end) {
+        Map<Long, CompletionCalendar> result = new LinkedHashMap<>();
+        if (habitIds != null) {
+            habitIds.forEach(id -> result.put(id, new CompletionCalendar(start, end)));
+        }
+        for (HabitLogDate row : findDates(habitIds, start, end)) {
+            result.computeIfAbsent(row.getHabitId(), k -> new CompletionCalendar(start, end)).mark(row.getDate());
+        }
+        for (WriteBehindBuffer.Change change : pendingChanges(start, end)) {
+            Long habitId = change.habit().getId();
+            if (includes(habitIds, habitId)) {
+                apply(result.computeIfAbsent(habitId, k -> new CompletionCalendar(start, end)), change);
+            }
+        }
+        return result;
     }
 
-    public List<HabitLog> getHabitLogs(Habit habit, LocalDate start, LocalDate end) {
-        return habitLogRepository.findByHabitAndDateBetween(habit, start, end);
+    // Marks and unmarks still held by the write-behind buffer, to overlay on what was read
+    private List<WriteBehindBuffer.Change> pendingChanges(LocalDate start, LocalDate end) {
+        return writeBehindBuffer.isEnabled() ? writeBehindBuffer.changesBetween(start, end) : List.of();
     }
 
+    private static boolean includes(List<Long> habitIds, Long habitId) {
+        return habitIds == null || habitIds.isEmpty() || habitIds.contains(habitId);
+    }
+
+    private static void apply(CompletionCalendar calendar, WriteBehindBuffer.Change change) {
+        if (change.insert()) {
+            calendar.mark(change.date());
+        } else {
+            calendar.unmark(change.date());
+        }
+    }
+
+    private List<HabitLogDate> findDates(List<Long> habitIds, LocalDate start, LocalDate end) {
+        if (habitIds == null || habitIds.isEmpty()) {
+            return habitLogRepository.findDatesBetween(start, end);
+        }
+        List<Long> ids = habitIds.stream().distinct().toList();
+        if (ids.size() <= MAX_IDS_PER_QUERY) {
+            return habitLogRepository.findDatesByHabitIdsBetween(ids, start, end);
+        }
+        List<HabitLogDate> rows = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += MAX_IDS_PER_QUERY) {
+            List<Long> chunk = ids.subList(i, Math.min(i + MAX_IDS_PER_QUERY, ids.size()));
+            rows.addAll(habitLogRepository.findDatesByHabitIdsBetween(chunk, start, end));
+        }
+        return rows;
+    }
+
+    @Timed(value = "habit.logs.unmark", histogram = true)
     public void unmarkHabitOnDate(Habit habit, LocalDate date) {
-        LocalDate start;
-        LocalDate end;
-
-        switch (habit.getFrequency()) {
-            case DAILY:
-                start = date;
-                end = date;
-                break;
-            case WEEKLY:
-                start = date.with(DayOfWeek.MONDAY);
-                end = date.with(DayOfWeek.SUNDAY);
-                break;
-            case MONTHLY:
-                start = date.withDayOfMonth(1);
-                end = date.withDayOfMonth(date.lengthOfMonth());
-                break;
-            default:
-                start = date;
-                end = date;
-        }
-
-        List<HabitLog> existing = habitLogRepository.findByHabitAndDateBetween(habit, start, end);
-        if (!existing.isEmpty()) {
-            habitLogRepository.deleteAll(existing);
+        if (writeBehindBuffer.isEnabled()) {
+            writeBehindBuffer.unmark(habit, date).ifPresent(completedOn -> {
+                dataVersions.bump(habit.getId());
+                habitEventService.completionChanged(habit, completedOn, false);
+            });
+            return;
+        }
+        Lock lock = completionIndex.lockFor(habit.getId());
+        lock.lock();
+        try {
+            // Deletes even when the index has no completion, which another instance may have written
+            Frequency frequency = habit.getFrequency();
+            List<LocalDate> deleted = transactionTemplate.execute(status -> {
+                List<LocalDate> dates = habitLogJdbcRepository.deletePeriod(
+                        habit.getId(), frequency.periodStart(date), frequency.periodEnd(date));
+                // A weekly period can span two months, so decrement the month of each removed log
+                for (LocalDate removed : dates) {
+                    rollupRepository.addCompletions(habit.getId(), removed.getYear(), removed.getMonthValue(), -1);
+                }
+                return dates;
+            });
+            completionIndex.recordUnmark(habit, date);
+            if (!deleted.isEmpty()) {
+                streakService.recordUnmark(habit.getId(), frequency, date);
+                dataVersions.bump(habit.getId());
+                habitEventService.completionChanged(habit, deleted.get(0), false);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 }
@@ -0,0 +1,84 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.repository.HabitJdbcRepository;
+import com.tracker.habittracker.repository.HabitJdbcRepository.DeletedHabit;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Removes deleted habits in the background. Deleting a habit only hides it (see
+ * {@link HabitService#deleteHabit}); the purge then deletes its logs
+ * {@code app.purge.chunk-size} at a time, each chunk committed on its own, and
+ * drops the habit row last. Progress lives in the database, so a purge cut off
+ * by a restart continues where it stopped.
+ */
+@Service
+public class HabitPurgeService {
+
+    private static final Logger log = LoggerFactory.getLogger(HabitPurgeService.class);
+
+    public record PurgeStatus(Long habitId, String name, Instant deletedAt, long logsRemaining) {}
+
+    private final HabitJdbcRepository habitJdbcRepository;
+    private final HabitLogJdbcRepository habitLogJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Counter purgedLogs;
+
+    public HabitPurgeService(HabitJdbcRepository habitJdbcRepository, HabitLogJdbcRepository habitLogJdbcRepository,
+                             TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+                             @Value("${app.purge.chunk-size:5000}") int chunkSize) {
+        this.habitJdbcRepository = habitJdbcRepository;
+        this.habitLogJdbcRepository = habitLogJdbcRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.purgedLogs = Counter.builder("habit.purge.logs")
+                .description("Logs of deleted habits removed by the purge")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.purge.interval-ms:10000}")
+    public void purgeDeletedHabits() {
+        for (DeletedHabit habit : habitJdbcRepository.findDeleted()) {
+            try {
+                purge(habit);
+            } catch (RuntimeException e) {
+                log.error("Purge of deleted habit {} failed, retrying on the next run", habit.id(), e);
+            }
+        }
+    }
+
+    /**
+     * Purges one deleted habit and returns the number of logs removed.
+     */
+    public long purge(DeletedHabit habit) {
+        long purged = 0;
+        int deleted;
+        do {
+            deleted = habitLogJdbcRepository.deleteLogsOfHabit(habit.id(), chunkSize);
+            purged += deleted;
+            purgedLogs.increment(deleted);
+        } while (deleted == chunkSize);
+        transactionTemplate.executeWithoutResult(status -> habitJdbcRepository.deletePurged(habit.id()));
+        log.info("Purged deleted habit {} '{}' with {} logs", habit.id(), habit.name(), purged);
+        return purged;
+    }
+
+    // Deleted habits still waiting for their purge to finish
+    public List<PurgeStatus> pending() {
+        return habitJdbcRepository.findDeleted().stream()
+                .map(habit -> new PurgeStatus(habit.id(), habit.name(), habit.deletedAt(),
+                        habitLogJdbcRepository.countLogsOfHabit(habit.id())))
+                .toList();
+    }
+}
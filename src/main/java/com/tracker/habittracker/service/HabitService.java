@@ -1,48 +1,105 @@
 package com.tracker.habittracker.service;
 
+import com.tracker.habittracker.config.CacheConfig;
+import com.tracker.habittracker.config.ReadWriteRoutingDataSource;
 import com.tracker.habittracker.dto.CreateHabitRequest;
+import com.tracker.habittracker.dto.HabitSummary;
+import com.tracker.habittracker.dto.KeysetPage;
 import com.tracker.habittracker.model.Habit;
 import com.tracker.habittracker.model.Frequency;
 import com.tracker.habittracker.repository.HabitRepository;
-import com.tracker.habittracker.repository.HabitLogRepository;
+import com.tracker.habittracker.repository.HabitMonthlyRollupRepository;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.Limit;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.util.List;
 
 @Service
 public class HabitService {
 
     private final HabitRepository habitRepository;
-    private final HabitLogRepository habitLogRepository;
+    private final HabitMonthlyRollupRepository rollupRepository;
+    private final CompletionIndex completionIndex;
+    private final StreakService streakService;
+    private final WriteBehindBuffer writeBehindBuffer;
+    private final DataVersions dataVersions;
+    private final HabitEventService habitEventService;
 
-    public HabitService(HabitRepository habitRepository, HabitLogRepository habitLogRepository) {
+    public HabitService(HabitRepository habitRepository, HabitMonthlyRollupRepository rollupRepository,
+                        CompletionIndex completionIndex, StreakService streakService,
+                        WriteBehindBuffer writeBehindBuffer, DataVersions dataVersions,
+                        HabitEventService habitEventService) {
         this.habitRepository = habitRepository;
-        this.habitLogRepository = habitLogRepository;
+        this.rollupRepository = rollupRepository;
+        this.completionIndex = completionIndex;
+        this.streakService = streakService;
+        this.writeBehindBuffer = writeBehindBuffer;
+        this.dataVersions = dataVersions;
+        this.habitEventService = habitEventService;
     }
 
+    // Cached as an unmodifiable snapshot shared by all callers
+    @Cacheable(cacheNames = CacheConfig.ALL_HABITS, key = "'all'")
     public List<Habit> getAllHabits() {
-        return habitRepository.findAll();
+        return ReadWriteRoutingDataSource.readPrimary(() -> List.copyOf(habitRepository.findAll()));
     }
 
+    /**
+     * Habits with an id greater than {@code afterId} (all habits when null), at
+     * most {@code limit} of them in id order.
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<HabitSummary> getHabitPage(Long afterId, int limit) {
+        List<HabitSummary> rows = habitRepository.findSummariesAfter(
+                afterId == null ? 0L : afterId, Limit.of(limit + 1));
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<HabitSummary> page = rows.subList(0, limit);
+        return new KeysetPage<>(page, String.valueOf(page.get(limit - 1).id()));
+    }
+
+    @Cacheable(cacheNames = CacheConfig.HABITS_BY_ID, key = "#id")
     public Habit getHabitById(Long id) {
-        return habitRepository.findById(id)
+        return ReadWriteRoutingDataSource.readPrimary(() -> habitRepository.findById(id))
                 .orElseThrow(() -> new RuntimeException("Habit not found"));
     }
 
+    @CacheEvict(cacheNames = CacheConfig.ALL_HABITS, allEntries = true)
     public Habit addHabit(CreateHabitRequest request) {
         Frequency frequency = Frequency.fromString(request.frequency);
         Habit habit = new Habit();
         habit.setName(request.name);
         habit.setDescription(request.description);
         habit.setFrequency(frequency);
-        return habitRepository.save(habit);
+        Habit saved = habitRepository.save(habit);
+        dataVersions.bump(List.of());
+        habitEventService.habitAdded(saved.getId());
+        return saved;
     }
 
+    /**
+     * Marks the habit deleted, which hides it from every query at once. Its
+     * rollups go now; its logs are purged later by {@link HabitPurgeService}.
+     */
     @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.HABITS_BY_ID, key = "#id"),
+            @CacheEvict(cacheNames = CacheConfig.ALL_HABITS, allEntries = true)
+    })
     public void deleteHabit(Long id) {
-        Habit habit = getHabitById(id);
-        habitLogRepository.deleteByHabit(habit);
-        habitRepository.delete(habit);
+        getHabitById(id);
+        habitRepository.markDeleted(id, Instant.now());
+        rollupRepository.deleteByHabitId(id);
+        completionIndex.evict(id);
+        streakService.evict(id);
+        writeBehindBuffer.discard(id);
+        dataVersions.bump(id);
+        habitEventService.habitDeleted(id);
     }
 }
@@ -0,0 +1,132 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.repository.HabitCompletionCount;
+import com.tracker.habittracker.repository.HabitCompletionTotal;
+import com.tracker.habittracker.repository.HabitLogRepository;
+import com.tracker.habittracker.repository.HabitMonthlyRollupRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates completions for all habits with grouped queries instead of loading
+ * the logs of every habit separately. Whole months are read from the monthly
+ * rollup; only partial months at the edges of a range touch habit_logs.
+ * Completions are read in read-only transactions, which use the replica when
+ * one is configured.
+ */
+@Service
+public class HabitStatsService {
+
+    private final HabitLogRepository habitLogRepository;
+    private final HabitMonthlyRollupRepository rollupRepository;
+    private final StreakService streakService;
+    private final WriteBehindBuffer writeBehindBuffer;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public HabitStatsService(HabitLogRepository habitLogRepository, HabitMonthlyRollupRepository rollupRepository,
+                             StreakService streakService, WriteBehindBuffer writeBehindBuffer,
+                             PlatformTransactionManager transactionManager) {
+        this.habitLogRepository = habitLogRepository;
+        this.rollupRepository = rollupRepository;
+        this.streakService = streakService;
+        this.writeBehindBuffer = writeBehindBuffer;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Integer> getMonthlyStats(int year, int month) {
+        Map<String, Integer> stats = new HashMap<>();
+        for (HabitCompletionCount count : rollupRepository.findMonthlyCompletions(year, month)) {
+            stats.put(count.getName(), (int) count.getCompletions());
+        }
+        LocalDate start = LocalDate.of(year, month, 1);
+        for (WriteBehindBuffer.Change change : pendingChanges(start, start.withDayOfMonth(start.lengthOfMonth()))) {
+            stats.merge(change.habit().getName(), change.insert() ? 1 : -1, Integer::sum);
+        }
+        return stats;
+    }
+
+    // One habit's completions in a month, as getMonthlyStats() would report them. Called right after
+    // a change is committed, so it reads the primary: a lagging replica could miss that change.
+    public int getMonthCompletions(Long habitId, int year, int month) {
+        long completions = rollupRepository.findCompletions(habitId, year, month).orElse(0L);
+        LocalDate start = LocalDate.of(year, month, 1);
+        for (WriteBehindBuffer.Change change : pendingChanges(start, start.withDayOfMonth(start.lengthOfMonth()))) {
+            if (change.habit().getId().equals(habitId)) {
+                completions += change.insert() ? 1 : -1;
+            }
+        }
+        return (int) completions;
+    }
+
+    public Map<String, Object> getRangeStats(LocalDate start, LocalDate end) {
+        Map<Long, Long> extra = new HashMap<>();
+        List<HabitCompletionCount> counts = readOnlyTransaction.execute(status -> countCompletions(start, end, extra));
+        for (WriteBehindBuffer.Change change : pendingChanges(start, end)) {
+            extra.merge(change.habit().getId(), change.insert() ? 1L : -1L, Long::sum);
+        }
+
+        // Outside the read-only transaction, whose replica connection would also serve the streak loads
+        Map<Long, Frequency> frequencies = new HashMap<>();
+        counts.forEach(count -> frequencies.put(count.getHabitId(), count.getFrequency()));
+        Map<Long, StreakService.Streak> streaks = streakService.getStreaks(frequencies);
+        Map<String, Object> result = new HashMap<>();
+
+        for (HabitCompletionCount count : counts) {
+            int completions = (int) (count.getCompletions() + extra.getOrDefault(count.getHabitId(), 0L));
+            long possible = count.getFrequency().periodsBetween(start, end);
+            double rate = possible == 0 ? 0.0 : (double) completions / possible;
+
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("completions", completions);
+            stats.put("possible", possible);
+            stats.put("rate", rate);
+            StreakService.Streak streak = streaks.getOrDefault(count.getHabitId(), StreakService.Streak.NONE);
+            stats.put("currentStreak", streak.current());
+            stats.put("longestStreak", streak.longest());
+            result.put(count.getName(), stats);
+        }
+        return result;
+    }
+
+    // Completions of every habit in the range; those read from the rollup and the tail go to extra
+    private List<HabitCompletionCount> countCompletions(LocalDate start, LocalDate end, Map<Long, Long> extra) {
+        LocalDate firstFullMonth = start.getDayOfMonth() == 1 ? start : start.withDayOfMonth(1).plusMonths(1);
+        LocalDate endOfLastFullMonth = end.getDayOfMonth() == end.lengthOfMonth() ? end : end.withDayOfMonth(1).minusDays(1);
+        List<HabitCompletionCount> counts;
+        if (firstFullMonth.isAfter(endOfLastFullMonth)) {
+            counts = habitLogRepository.countCompletionsBetween(start, end);
+        } else {
+            // Head and tail are partial months read from the logs; the months in between come from the rollup.
+            // The head query also lists every habit, with zero completions when the head is empty.
+            counts = habitLogRepository.countCompletionsBetween(start, firstFullMonth.minusDays(1));
+            if (endOfLastFullMonth.isBefore(end)) {
+                addTotals(extra, habitLogRepository.sumCompletionsBetween(endOfLastFullMonth.plusDays(1), end));
+            }
+            addTotals(extra, rollupRepository.sumCompletionsBetweenMonths(
+                    firstFullMonth.getYear(), firstFullMonth.getMonthValue(),
+                    endOfLastFullMonth.getYear(), endOfLastFullMonth.getMonthValue()));
+        }
+        return counts;
+    }
+
+    // Marks and unmarks not yet written by the write-behind buffer
+    private List<WriteBehindBuffer.Change> pendingChanges(LocalDate start, LocalDate end) {
+        return writeBehindBuffer.isEnabled() ? writeBehindBuffer.changesBetween(start, end) : List.of();
+    }
+
+    private static void addTotals(Map<Long, Long> totals, List<HabitCompletionTotal> rows) {
+        for (HabitCompletionTotal row : rows) {
+            totals.merge(row.getHabitId(), row.getCompletions(), Long::sum);
+        }
+    }
+}
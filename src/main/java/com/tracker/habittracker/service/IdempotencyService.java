@@ -0,0 +1,64 @@
+package com.tracker.habittracker.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Runs a write at most once per Idempotency-Key, so a client can retry a mark or
+ * unmark whose response it never received. A repeat of a completed request is
+ * answered from the {@link IdempotencyStore} without running it again; in
+ * particular a retried unmark cannot undo a mark the user made after it. A
+ * failed request releases its key so it can be retried.
+ */
+@Service
+public class IdempotencyService {
+
+    public enum Outcome {
+        EXECUTED,
+        // Completed earlier by a request with the same key and fingerprint
+        REPLAYED,
+        // A request with the same key is still running
+        IN_PROGRESS,
+        // The key was used for a different request
+        MISMATCH
+    }
+
+    private final IdempotencyStore store;
+    private final MeterRegistry meterRegistry;
+
+    public IdempotencyService(IdempotencyStore store, MeterRegistry meterRegistry) {
+        this.store = store;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs {@code work} unless {@code client} already used {@code key}; without
+     * a key it always runs. {@code client} identifies the sender, e.g. its
+     * address, and {@code fingerprint} the request, e.g. its method, habit and
+     * date.
+     */
+    public Outcome run(String client, String key, String fingerprint, Runnable work) {
+        if (key == null) {
+            work.run();
+            return Outcome.EXECUTED;
+        }
+        Optional<IdempotencyStore.Entry> existing = store.claim(client, key, fingerprint);
+        if (existing.isPresent()) {
+            IdempotencyStore.Entry entry = existing.get();
+            Outcome outcome = !entry.fingerprint().equals(fingerprint) ? Outcome.MISMATCH
+                    : entry.completed() ? Outcome.REPLAYED : Outcome.IN_PROGRESS;
+            meterRegistry.counter("habit.idempotency.repeats", "outcome", outcome.name().toLowerCase()).increment();
+            return outcome;
+        }
+        try {
+            work.run();
+        } catch (RuntimeException | Error e) {
+            store.release(client, key);
+            throw e;
+        }
+        store.complete(client, key);
+        return Outcome.EXECUTED;
+    }
+}
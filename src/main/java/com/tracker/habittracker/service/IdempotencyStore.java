@@ -0,0 +1,28 @@
+package com.tracker.habittracker.service;
+
+import java.util.Optional;
+
+/**
+ * Recently used Idempotency-Key values, each with a fingerprint of the request
+ * that claimed it. Keys are scoped to the client that sent them, so clients
+ * picking the same key never see each other's requests. Entries expire after
+ * {@code app.idempotency.ttl}. The store
+ * is picked with {@code app.idempotency.store}: {@code memory} (the default) or
+ * {@code jdbc}, which shares keys between instances through the database.
+ */
+public interface IdempotencyStore {
+
+    record Entry(String fingerprint, boolean completed) {}
+
+    /**
+     * Claims the client's key for a request. Returns empty when the caller now
+     * holds it, otherwise the entry of the request that does.
+     */
+    Optional<Entry> claim(String client, String key, String fingerprint);
+
+    // The request holding the key succeeded; repeats are answered from the entry
+    void complete(String client, String key);
+
+    // The request holding the key failed; a retry may run it again
+    void release(String client, String key);
+}
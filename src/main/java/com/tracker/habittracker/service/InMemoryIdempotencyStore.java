@@ -0,0 +1,48 @@
+package com.tracker.habittracker.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Keys held in a bounded Caffeine cache, so a repeated request is answered
+ * without touching the database. Keys are lost on restart and not shared
+ * between instances.
+ */
+@Component
+@ConditionalOnProperty(name = "app.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private record ClientKey(String client, String key) {}
+
+    private final Cache<ClientKey, Entry> entries;
+
+    public InMemoryIdempotencyStore(@Value("${app.idempotency.max-keys:100000}") long maxKeys,
+                                    @Value("${app.idempotency.ttl:24h}") Duration ttl) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    @Override
+    public Optional<Entry> claim(String client, String key, String fingerprint) {
+        return Optional.ofNullable(entries.asMap().putIfAbsent(new ClientKey(client, key),
+                new Entry(fingerprint, false)));
+    }
+
+    @Override
+    public void complete(String client, String key) {
+        entries.asMap().computeIfPresent(new ClientKey(client, key), (k, entry) -> new Entry(entry.fingerprint(), true));
+    }
+
+    @Override
+    public void release(String client, String key) {
+        entries.invalidate(new ClientKey(client, key));
+    }
+}
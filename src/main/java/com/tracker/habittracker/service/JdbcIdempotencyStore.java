@@ -0,0 +1,77 @@
+package com.tracker.habittracker.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keys kept in the idempotency_keys table, shared by every instance and kept
+ * across restarts. A key whose request never finished, e.g. because its
+ * instance died, can be claimed again once it is older than
+ * {@code app.idempotency.lease}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.idempotency.store", havingValue = "jdbc")
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long ttlMillis;
+    private final long leaseMillis;
+
+    public JdbcIdempotencyStore(JdbcTemplate jdbcTemplate,
+                                @Value("${app.idempotency.ttl:24h}") Duration ttl,
+                                @Value("${app.idempotency.lease:30s}") Duration lease) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlMillis = ttl.toMillis();
+        this.leaseMillis = lease.toMillis();
+    }
+
+    @Override
+    public Optional<Entry> claim(String client, String key, String fingerprint) {
+        while (true) {
+            // Inserts the key, or takes over an expired or abandoned one
+            int claimed = jdbcTemplate.update("""
+                    insert into idempotency_keys (client, idempotency_key, fingerprint) values (?, ?, ?)
+                    on conflict (client, idempotency_key) do update
+                    set fingerprint = excluded.fingerprint, completed = false, created_at = now()
+                    where idempotency_keys.created_at < now() - interval '1 millisecond'
+                          * case when idempotency_keys.completed then ? else ? end""",
+                    client, key, fingerprint, ttlMillis, leaseMillis);
+            if (claimed > 0) {
+                return Optional.empty();
+            }
+            List<Entry> existing = jdbcTemplate.query(
+                    "select fingerprint, completed from idempotency_keys where client = ? and idempotency_key = ?",
+                    (rs, i) -> new Entry(rs.getString("fingerprint"), rs.getBoolean("completed")), client, key);
+            // Otherwise it was released or removed in between; try again
+            if (!existing.isEmpty()) {
+                return Optional.of(existing.get(0));
+            }
+        }
+    }
+
+    @Override
+    public void complete(String client, String key) {
+        jdbcTemplate.update("""
+                update idempotency_keys set completed = true, created_at = now()
+                where client = ? and idempotency_key = ?""", client, key);
+    }
+
+    @Override
+    public void release(String client, String key) {
+        jdbcTemplate.update("delete from idempotency_keys where client = ? and idempotency_key = ? and not completed",
+                client, key);
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.cleanup-interval-ms:600000}")
+    public void deleteExpired() {
+        jdbcTemplate.update("delete from idempotency_keys where created_at < now() - interval '1 millisecond' * ?",
+                ttlMillis);
+    }
+}
@@ -0,0 +1,48 @@
+package com.tracker.habittracker.service;
+
+import org.springframework.http.MediaType;
+
+/**
+ * File formats accepted by the habit log export and import endpoints.
+ */
+public enum LogFileFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    LogFileFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static LogFileFormat fromString(String value) {
+        for (LogFileFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(value)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported format: " + value);
+    }
+
+    public static LogFileFormat fromContentType(String contentType) {
+        if (contentType != null) {
+            MediaType type = MediaType.parseMediaType(contentType);
+            for (LogFileFormat format : values()) {
+                if (type.isCompatibleWith(MediaType.parseMediaType(format.contentType))) {
+                    return format;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unsupported content type: " + contentType);
+    }
+}
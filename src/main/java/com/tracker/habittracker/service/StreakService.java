@@ -0,0 +1,202 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.config.ReadWriteRoutingDataSource;
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.repository.HabitLogDate;
+import com.tracker.habittracker.repository.HabitLogRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Current and longest streak per habit, counted in periods of the habit's
+ * {@link Frequency}. A streak is current while its last period is the present
+ * or the previous one, so a habit is not broken before its period is over.
+ * <p>
+ * Each habit's state is rebuilt from habit_logs on first use. After that a mark
+ * that extends or starts the latest run is O(1), and so is an unmark that cannot
+ * affect the longest run. Any other change drops the state so the next read
+ * rebuilds it with a single query.
+ */
+@Service
+public class StreakService {
+
+    public record Streak(int current, int longest) {
+        public static final Streak NONE = new Streak(0, 0);
+    }
+
+    // Small enough that a chunk of habits with years of daily logs fits comfortably in memory
+    private static final int HABITS_PER_REBUILD_QUERY = 100;
+
+    private static final class State {
+        boolean empty = true;
+        long lastPeriod;    // index of the latest completed period
+        int tailRun;        // length of the run ending at lastPeriod
+        int longest;
+    }
+
+    private final HabitLogRepository habitLogRepository;
+    private final Map<Long, State> states;
+    // Habits being rebuilt, flagged when they are written to meanwhile; guarded by states
+    private final Map<Long, Boolean> rebuilding = new HashMap<>();
+
+    public StreakService(HabitLogRepository habitLogRepository,
+                         @Value("${app.streaks.max-habits:100000}") int maxHabits) {
+        this.habitLogRepository = habitLogRepository;
+        this.states = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, State> eldest) {
+                return size() > maxHabits;
+            }
+        };
+    }
+
+    public Streak getStreak(Long habitId, Frequency frequency) {
+        return getStreaks(Map.of(habitId, frequency)).get(habitId);
+    }
+
+    public Map<Long, Streak> getStreaks(Map<Long, Frequency> frequencies) {
+        return getStreaks(frequencies, LocalDate.now());
+    }
+
+    Map<Long, Streak> getStreaks(Map<Long, Frequency> frequencies, LocalDate today) {
+        Map<Long, Streak> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        synchronized (states) {
+            frequencies.forEach((habitId, frequency) -> {
+                State state = states.get(habitId);
+                if (state == null) {
+                    missing.add(habitId);
+                } else {
+                    result.put(habitId, toStreak(state, frequency, today));
+                }
+            });
+            // Keeps the flag of a rebuild already in flight, which a write may have set
+            missing.forEach(habitId -> rebuilding.putIfAbsent(habitId, Boolean.FALSE));
+        }
+        if (!missing.isEmpty()) {
+            rebuild(missing, frequencies).forEach((habitId, state) ->
+                    result.put(habitId, toStreak(state, frequencies.get(habitId), today)));
+        }
+        return result;
+    }
+
+    public void recordMark(Long habitId, Frequency frequency, LocalDate date) {
+        long period = frequency.periodIndex(date);
+        synchronized (states) {
+            State state = states.get(habitId);
+            if (state == null) {
+                rebuilding.computeIfPresent(habitId, (k, v) -> Boolean.TRUE);
+                return;
+            }
+            if (state.empty || period > state.lastPeriod + 1) {
+                state.empty = false;
+                state.lastPeriod = period;
+                state.tailRun = 1;
+                state.longest = Math.max(state.longest, 1);
+            } else if (period == state.lastPeriod + 1) {
+                state.lastPeriod = period;
+                state.tailRun++;
+                state.longest = Math.max(state.longest, state.tailRun);
+            } else if (period != state.lastPeriod) {
+                // Filling a gap in the past may join two runs
+                states.remove(habitId);
+            }
+        }
+    }
+
+    public void recordUnmark(Long habitId, Frequency frequency, LocalDate date) {
+        long period = frequency.periodIndex(date);
+        synchronized (states) {
+            State state = states.get(habitId);
+            if (state == null) {
+                rebuilding.computeIfPresent(habitId, (k, v) -> Boolean.TRUE);
+                return;
+            }
+            if (state.empty || period > state.lastPeriod) {
+                return;
+            }
+            long tailStart = state.lastPeriod - state.tailRun + 1;
+            boolean lastOfRun = period == state.lastPeriod && state.tailRun == 1;
+            if (period >= tailStart && state.tailRun < state.longest && !lastOfRun) {
+                // Shortens the latest run, which is not the longest one
+                if (period == state.lastPeriod) {
+                    state.lastPeriod--;
+                    state.tailRun--;
+                } else {
+                    state.tailRun = (int) (state.lastPeriod - period);
+                }
+            } else {
+                states.remove(habitId);
+            }
+        }
+    }
+
+    public void evict(Long habitId) {
+        synchronized (states) {
+            states.remove(habitId);
+            rebuilding.computeIfPresent(habitId, (k, v) -> Boolean.TRUE);
+        }
+    }
+
+    private Map<Long, State> rebuild(List<Long> habitIds, Map<Long, Frequency> frequencies) {
+        Map<Long, State> rebuilt = new HashMap<>();
+        // Scan one chunk at a time so only a chunk's dates are held in memory at once
+        for (int i = 0; i < habitIds.size(); i += HABITS_PER_REBUILD_QUERY) {
+            List<Long> chunk = habitIds.subList(i, Math.min(i + HABITS_PER_REBUILD_QUERY, habitIds.size()));
+            Map<Long, List<LocalDate>> datesByHabit = new HashMap<>();
+            for (HabitLogDate row : ReadWriteRoutingDataSource.readPrimary(
+                    () -> habitLogRepository.findDatesByHabitIds(chunk))) {
+                datesByHabit.computeIfAbsent(row.getHabitId(), k -> new ArrayList<>()).add(row.getDate());
+            }
+            for (Long habitId : chunk) {
+                Frequency frequency = frequencies.get(habitId);
+                List<LocalDate> dates = datesByHabit.getOrDefault(habitId, List.of());
+                long[] periods = new long[dates.size()];
+                for (int j = 0; j < periods.length; j++) {
+                    periods[j] = frequency.periodIndex(dates.get(j));
+                }
+                rebuilt.put(habitId, scan(periods));
+            }
+        }
+        synchronized (states) {
+            rebuilt.forEach((habitId, state) -> {
+                // Only cache states that no write raced with
+                if (Boolean.FALSE.equals(rebuilding.remove(habitId))) {
+                    states.putIfAbsent(habitId, state);
+                }
+            });
+        }
+        return rebuilt;
+    }
+
+    private static State scan(long[] periods) {
+        Arrays.sort(periods);
+        State state = new State();
+        for (long period : periods) {
+            if (!state.empty && period == state.lastPeriod) {
+                continue;
+            }
+            state.tailRun = !state.empty && period == state.lastPeriod + 1 ? state.tailRun + 1 : 1;
+            state.lastPeriod = period;
+            state.empty = false;
+            state.longest = Math.max(state.longest, state.tailRun);
+        }
+        return state;
+    }
+
+    private static Streak toStreak(State state, Frequency frequency, LocalDate today) {
+        if (state.empty) {
+            return Streak.NONE;
+        }
+        boolean alive = state.lastPeriod >= frequency.periodIndex(today) - 1;
+        return new Streak(alive ? state.tailRun : 0, state.longest);
+    }
+}
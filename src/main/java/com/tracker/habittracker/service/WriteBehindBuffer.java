@@ -0,0 +1,313 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.dto.BulkMarkRequest;
+import com.tracker.habittracker.dto.BulkMarkResult;
+import com.tracker.habittracker.model.Habit;
+import com.tracker.habittracker.repository.HabitLogRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional write-behind mode for single mark/unmark requests, enabled with
+ * {@code app.write-behind.enabled}. Instead of a transaction per request, each
+ * habit period keeps at most one pending change relative to the database: a log
+ * to insert or a log to delete. A toggle that reverses a pending change simply
+ * drops it, so a burst of taps on the same day costs nothing, and what is left
+ * is written every {@code app.write-behind.flush-interval-ms} through
+ * {@link BulkMarkService}, when more than {@code app.write-behind.max-pending}
+ * changes pile up, and on shutdown.
+ * <p>
+ * {@link CompletionIndex} keeps reflecting the database; readers overlay
+ * {@link #changesBetween} on what they load. A flush drops its changes from the
+ * overlay when it commits, so they are never counted twice. Streaks are updated
+ * as changes are buffered. As with bulk marks, re-marking a completed period
+ * keeps the date it was completed on. Bulk marks and imports flush the buffer
+ * before they run.
+ */
+@Service
+public class WriteBehindBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+    /**
+     * A pending change: insert a log for {@code habit} on {@code date}, or delete
+     * its log on {@code date}.
+     */
+    public record Change(Habit habit, LocalDate date, boolean insert) {}
+
+    private record PeriodKey(Long habitId, LocalDate periodStart) {}
+
+    private final boolean enabled;
+    private final int maxPending;
+    private final BulkMarkService bulkMarkService;
+    private final CompletionIndex completionIndex;
+    private final StreakService streakService;
+    private final HabitLogRepository habitLogRepository;
+    private final Lock flushLock = new ReentrantLock();
+    private final Counter bufferedOperations;
+    private final Counter coalescedOperations;
+    private final Counter flushedWrites;
+
+    // Changes not yet handed to a flush, and those of the flush in progress; guarded by this
+    private Map<PeriodKey, Change> pending = new LinkedHashMap<>();
+    private Map<PeriodKey, Change> flushing = Map.of();
+
+    public WriteBehindBuffer(@Value("${app.write-behind.enabled:false}") boolean enabled,
+                             @Value("${app.write-behind.max-pending:10000}") int maxPending,
+                             BulkMarkService bulkMarkService, CompletionIndex completionIndex,
+                             StreakService streakService, HabitLogRepository habitLogRepository,
+                             MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxPending = maxPending;
+        this.bulkMarkService = bulkMarkService;
+        this.completionIndex = completionIndex;
+        this.streakService = streakService;
+        this.habitLogRepository = habitLogRepository;
+        this.bufferedOperations = Counter.builder("habit.write_behind.operations").tag("outcome", "buffered")
+                .register(meterRegistry);
+        this.coalescedOperations = Counter.builder("habit.write_behind.operations").tag("outcome", "coalesced")
+                .register(meterRegistry);
+        this.flushedWrites = Counter.builder("habit.write_behind.writes")
+                .description("Log inserts and deletes written by flushes")
+                .register(meterRegistry);
+        Gauge.builder("habit.write_behind.pending", this, WriteBehindBuffer::size).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Buffers a mark and returns the date the period is now completed on, or
+     * empty when it already was completed.
+     */
+    public Optional<LocalDate> mark(Habit habit, LocalDate date) {
+        PeriodKey key = new PeriodKey(habit.getId(), habit.getFrequency().periodStart(date));
+        Optional<LocalDate> completed = Optional.empty();
+        Lock lock = completionIndex.lockFor(habit.getId());
+        lock.lock();
+        try {
+            Boolean marked = null;
+            synchronized (this) {
+                Change change = pending.get(key);
+                if (change != null) {
+                    coalescedOperations.increment();
+                    if (change.insert()) {
+                        return Optional.empty();
+                    }
+                    // Cancels a buffered unmark; the period is completed in the database
+                    pending.remove(key);
+                    streakService.recordMark(habit.getId(), habit.getFrequency(), change.date());
+                    return Optional.of(change.date());
+                }
+                Change inFlight = flushing.get(key);
+                if (inFlight != null) {
+                    marked = inFlight.insert();
+                }
+            }
+            if (marked == null) {
+                // A completion the index knows of may have been removed by another instance
+                marked = completionIndex.isMarked(habit, date)
+                        && !habitLogRepository.findDatesByHabitIdBetween(
+                                habit.getId(), key.periodStart(), habit.getFrequency().periodEnd(date)).isEmpty();
+            }
+            if (!marked) {
+                buffer(key, new Change(habit, date, true));
+                streakService.recordMark(habit.getId(), habit.getFrequency(), date);
+                completed = Optional.of(date);
+            }
+        } finally {
+            lock.unlock();
+        }
+        flushIfFull();
+        return completed;
+    }
+
+    /**
+     * Buffers an unmark and returns the date of the completion it removes, or
+     * empty when the period was not completed.
+     */
+    public Optional<LocalDate> unmark(Habit habit, LocalDate date) {
+        LocalDate periodStart = habit.getFrequency().periodStart(date);
+        PeriodKey key = new PeriodKey(habit.getId(), periodStart);
+        Optional<LocalDate> removed = Optional.empty();
+        Lock lock = completionIndex.lockFor(habit.getId());
+        lock.lock();
+        try {
+            LocalDate completedOn = null;
+            boolean known = false;
+            synchronized (this) {
+                Change change = pending.get(key);
+                if (change != null) {
+                    coalescedOperations.increment();
+                    if (!change.insert()) {
+                        return Optional.empty();
+                    }
+                    // Cancels a buffered mark; the period is not completed in the database
+                    pending.remove(key);
+                    streakService.recordUnmark(habit.getId(), habit.getFrequency(), date);
+                    return Optional.of(change.date());
+                }
+                Change inFlight = flushing.get(key);
+                if (inFlight != null) {
+                    known = true;
+                    completedOn = inFlight.insert() ? inFlight.date() : null;
+                }
+            }
+            // The index may not know of a completion written by another instance
+            if (!known) {
+                List<LocalDate> dates = habitLogRepository.findDatesByHabitIdBetween(
+                        habit.getId(), periodStart, habit.getFrequency().periodEnd(date));
+                completedOn = dates.isEmpty() ? null : dates.get(0);
+            }
+            if (completedOn != null) {
+                buffer(key, new Change(habit, completedOn, false));
+                streakService.recordUnmark(habit.getId(), habit.getFrequency(), date);
+                removed = Optional.of(completedOn);
+            }
+        } finally {
+            lock.unlock();
+        }
+        flushIfFull();
+        return removed;
+    }
+
+    // Each change flips its period, so a change on top of a restored one cancels it
+    private synchronized void buffer(PeriodKey key, Change change) {
+        bufferedOperations.increment();
+        if (pending.remove(key) == null) {
+            pending.put(key, change);
+        }
+    }
+
+    // Drops the pending changes of a deleted habit; a flush already under way finds it gone
+    public synchronized void discard(Long habitId) {
+        pending.keySet().removeIf(key -> key.habitId().equals(habitId));
+    }
+
+    /**
+     * Pending changes with a date in the given range, including those being
+     * flushed, for overlaying on what readers load from the database.
+     */
+    public synchronized List<Change> changesBetween(LocalDate start, LocalDate end) {
+        if (pending.isEmpty() && flushing.isEmpty()) {
+            return List.of();
+        }
+        List<Change> changes = new ArrayList<>();
+        flushing.forEach((key, change) -> {
+            // A pending change on top of an in-flight one cancels it
+            if (!pending.containsKey(key) && !change.date().isBefore(start) && !change.date().isAfter(end)) {
+                changes.add(change);
+            }
+        });
+        pending.forEach((key, change) -> {
+            if (!flushing.containsKey(key) && !change.date().isBefore(start) && !change.date().isAfter(end)) {
+                changes.add(change);
+            }
+        });
+        return changes;
+    }
+
+    // True while changes of any of the habits are pending or being flushed
+    public synchronized boolean hasChanges(Collection<Long> habitIds) {
+        return pending.keySet().stream().anyMatch(key -> habitIds.contains(key.habitId()))
+                || flushing.keySet().stream().anyMatch(key -> habitIds.contains(key.habitId()));
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.write-behind.flush-interval-ms:2000}")
+    public void scheduledFlush() {
+        if (enabled) {
+            flush();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (enabled) {
+            flush();
+        }
+    }
+
+    private void flushIfFull() {
+        if (size() >= maxPending) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes all pending changes and returns the number of logs inserted or
+     * deleted. If the write fails the changes are kept for the next flush.
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            Map<PeriodKey, Change> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                flushing = batch;
+            }
+            List<BulkMarkRequest.Operation> operations = new ArrayList<>(batch.size());
+            batch.values().forEach(change -> {
+                BulkMarkRequest.Operation op = new BulkMarkRequest.Operation();
+                op.habitId = change.habit().getId();
+                op.date = change.date().toString();
+                op.action = change.insert() ? "mark" : "unmark";
+                operations.add(op);
+            });
+            try {
+                int writes = 0;
+                // Readers stop overlaying the batch as soon as it is visible in the database
+                Runnable committed = () -> {
+                    synchronized (this) {
+                        flushing = Map.of();
+                    }
+                };
+                for (BulkMarkResult result : bulkMarkService.write(operations, committed)) {
+                    if ("marked".equals(result.status()) || "unmarked".equals(result.status())) {
+                        writes++;
+                    }
+                }
+                flushedWrites.increment(writes);
+                return writes;
+            } catch (RuntimeException e) {
+                log.error("Write-behind flush of {} changes failed, keeping them for the next flush", batch.size(), e);
+                synchronized (this) {
+                    batch.forEach((key, change) -> {
+                        if (pending.remove(key) == null) {
+                            pending.put(key, change);
+                        }
+                    });
+                    flushing = Map.of();
+                }
+                return 0;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+}
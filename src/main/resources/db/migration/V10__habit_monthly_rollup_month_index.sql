@@ -0,0 +1,3 @@
+-- Range stats sum the rollup of every habit over a span of months; this index
+-- serves that scan on its own.
+create index ix_habit_monthly_rollup_month on habit_monthly_rollup (year, month) include (habit_id, completions);
@@ -0,0 +1,16 @@
+-- Schema as previously generated by Hibernate (ddl-auto=update), before logs
+-- were keyed by period. Existing databases are baselined at this version, so it
+-- only runs on empty ones; everything added since is in the later migrations.
+
+create table habits (
+    id          bigint generated by default as identity primary key,
+    name        varchar(255),
+    description varchar(255),
+    frequency   varchar(255) check (frequency in ('DAILY', 'WEEKLY', 'MONTHLY'))
+);
+
+create table habit_logs (
+    id       bigint generated by default as identity primary key,
+    habit_id bigint references habits (id),
+    date     date
+);
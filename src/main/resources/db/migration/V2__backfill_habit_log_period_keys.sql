@@ -0,0 +1,40 @@
+-- Keys habit logs by period: adds period_key, keeps a single log per habit
+-- period and fills the key in. Databases that already have the column (created
+-- by ddl-auto=update) only get the missing keys and constraint.
+
+alter table habit_logs add column if not exists period_key date;
+
+delete from habit_logs a
+    using habit_logs b, habits h
+    where a.period_key is null
+      and b.habit_id = a.habit_id
+      and h.id = a.habit_id
+      and (b.period_key is not null or b.id < a.id)
+      and case h.frequency
+              when 'WEEKLY' then date_trunc('week', a.date)::date
+              when 'MONTHLY' then date_trunc('month', a.date)::date
+              else a.date end
+        = case h.frequency
+              when 'WEEKLY' then date_trunc('week', b.date)::date
+              when 'MONTHLY' then date_trunc('month', b.date)::date
+              else b.date end;
+
+update habit_logs l
+    set period_key = case h.frequency
+                         when 'WEEKLY' then date_trunc('week', l.date)::date
+                         when 'MONTHLY' then date_trunc('month', l.date)::date
+                         else l.date end
+    from habits h
+    where h.id = l.habit_id and l.period_key is null;
+
+-- A constraint rather than a bare index: the partitioning migration renames it
+create unique index if not exists ux_habit_logs_habit_period on habit_logs (habit_id, period_key);
+
+do $$
+begin
+    if not exists (select 1 from pg_constraint where conname = 'ux_habit_logs_habit_period') then
+        alter table habit_logs add constraint ux_habit_logs_habit_period
+            unique using index ux_habit_logs_habit_period;
+    end if;
+end
+$$;
@@ -0,0 +1,10 @@
+-- Indexes matching the habit_logs query shapes. ux_habit_logs_habit_period
+-- already serves the per-period upserts and deletes.
+
+-- One habit's logs in a date range, ordered by (date, id): calendars, keyset log
+-- pages, per-habit date lists. The leading habit_id also serves deletes by habit.
+create index if not exists ix_habit_logs_habit_date_id on habit_logs (habit_id, date, id);
+
+-- Date ranges across all habits: grouped stats counts and the batch logs endpoint,
+-- answered from the index alone.
+create index if not exists ix_habit_logs_date_habit on habit_logs (date, habit_id);
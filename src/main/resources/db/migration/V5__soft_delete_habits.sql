@@ -0,0 +1,6 @@
+-- Deleting a habit only sets deleted_at; its logs are then purged in chunks in
+-- the background and the row removed last. The partial index finds those
+-- pending purges.
+alter table habits add column deleted_at timestamp with time zone;
+
+create index ix_habits_deleted on habits (id) where deleted_at is not null;
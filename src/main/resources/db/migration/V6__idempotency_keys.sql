@@ -0,0 +1,10 @@
+-- Idempotency-Key values of recent writes, used when app.idempotency.store=jdbc.
+-- Rows older than app.idempotency.ttl are expired and removed in the background.
+create table idempotency_keys (
+    idempotency_key varchar(255)             primary key,
+    fingerprint     varchar(255)             not null,
+    completed       boolean                  not null default false,
+    created_at      timestamp with time zone not null default now()
+);
+
+create index ix_idempotency_keys_created_at on idempotency_keys (created_at);
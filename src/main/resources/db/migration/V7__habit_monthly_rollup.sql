@@ -0,0 +1,19 @@
+-- Per-month completion counts maintained by every write (see HabitMonthlyRollup).
+-- Databases created by ddl-auto=update may already have the table; it is filled
+-- from the existing logs when empty. Logs of deleted habits awaiting their purge
+-- have no rollup.
+create table if not exists habit_monthly_rollup (
+    id          bigint generated by default as identity primary key,
+    habit_id    bigint  not null,
+    year        integer not null,
+    month       integer not null,
+    completions bigint  not null,
+    constraint ux_habit_monthly_rollup unique (habit_id, year, month)
+);
+
+insert into habit_monthly_rollup (habit_id, year, month, completions)
+select habit_id, extract(year from date)::int, extract(month from date)::int, count(*)
+from habit_logs
+where habit_id in (select id from habits where deleted_at is null)
+  and not exists (select 1 from habit_monthly_rollup)
+group by 1, 2, 3;
@@ -0,0 +1,12 @@
+-- Rows of running imports, staged chunk by chunk outside any transaction and
+-- merged into habit_logs at the end. Unlogged, as the rows are only needed until
+-- the merge; rows left behind by an interrupted import are removed a day later.
+create unlogged table habit_log_import_rows (
+    import_id  uuid                     not null,
+    habit_id   bigint                   not null,
+    date       date                     not null,
+    period_key date                     not null,
+    staged_at  timestamp with time zone not null default now()
+);
+
+create index ix_habit_log_import_rows_import on habit_log_import_rows (import_id);
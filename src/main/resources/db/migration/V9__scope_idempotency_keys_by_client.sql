@@ -0,0 +1,6 @@
+-- Idempotency-Key values are scoped to the client that sent them (its address),
+-- so two clients picking the same key do not see each other's requests.
+-- Keys stored before have no client and simply expire.
+alter table idempotency_keys add column client varchar(64) not null default '';
+alter table idempotency_keys drop constraint idempotency_keys_pkey;
+alter table idempotency_keys add primary key (client, idempotency_key);
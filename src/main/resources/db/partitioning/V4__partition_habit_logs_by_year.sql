@@ -0,0 +1,72 @@
+-- Optional: range-partitions habit_logs by year. Enabled by adding
+-- classpath:db/partitioning to spring.flyway.locations.
+--
+-- The partition key is period_key rather than date: PostgreSQL requires unique
+-- constraints to include the partition key, and one log per (habit_id,
+-- period_key) is what the upserts rely on. A period never starts more than a
+-- month before any of its dates, so range queries bound period_key from the
+-- date range (period_key between start - 1 month and end) and scan only the
+-- years they touch.
+
+alter table habit_logs rename to habit_logs_unpartitioned;
+alter table habit_logs_unpartitioned rename constraint ux_habit_logs_habit_period to ux_habit_logs_unpartitioned_habit_period;
+alter index if exists ix_habit_logs_habit_date_id rename to ix_habit_logs_unpartitioned_habit_date_id;
+alter index if exists ix_habit_logs_date_habit rename to ix_habit_logs_unpartitioned_date_habit;
+
+create table habit_logs (
+    id         bigint not null,
+    habit_id   bigint references habits (id),
+    date       date,
+    period_key date   not null,
+    primary key (id, period_key),
+    constraint ux_habit_logs_habit_period unique (habit_id, period_key)
+) partition by range (period_key);
+
+create index ix_habit_logs_habit_date_id on habit_logs (habit_id, date, id);
+create index ix_habit_logs_date_habit on habit_logs (date, habit_id);
+
+-- Rows of years without their own partition land here until one is created
+create table habit_logs_default partition of habit_logs default;
+
+-- Creates the partition of one year, moving any of its rows out of the default
+-- partition. Run it ahead of each new year: select create_habit_logs_partition(2031);
+create function create_habit_logs_partition(p_year integer) returns void
+language plpgsql as $$
+declare
+    partition_name text := 'habit_logs_' || p_year;
+    first_day date := make_date(p_year, 1, 1);
+begin
+    if to_regclass(partition_name) is not null then
+        return;
+    end if;
+    alter table habit_logs detach partition habit_logs_default;
+    execute format('create table %I partition of habit_logs for values from (%L) to (%L)',
+                   partition_name, first_day, (first_day + interval '1 year')::date);
+    with moved as (
+        delete from habit_logs_default
+        where period_key >= first_day and period_key < (first_day + interval '1 year')::date
+        returning id, habit_id, date, period_key)
+    insert into habit_logs (id, habit_id, date, period_key)
+    select id, habit_id, date, period_key from moved;
+    alter table habit_logs attach partition habit_logs_default default;
+end;
+$$;
+
+-- Partitions for every year with logs, and the next few
+select create_habit_logs_partition(y)
+from generate_series(
+        least(coalesce((select extract(year from min(period_key))::int from habit_logs_unpartitioned),
+                       extract(year from current_date)::int),
+              extract(year from current_date)::int),
+        extract(year from current_date)::int + 3) as y;
+
+insert into habit_logs (id, habit_id, date, period_key)
+select id, habit_id, date, period_key from habit_logs_unpartitioned where period_key is not null;
+
+drop table habit_logs_unpartitioned;
+
+create sequence habit_logs_id_seq owned by habit_logs.id;
+select setval('habit_logs_id_seq', coalesce((select max(id) from habit_logs), 0) + 1, false);
+alter table habit_logs alter column id set default nextval('habit_logs_id_seq');
+
+analyze habit_logs;
@@ -0,0 +1,98 @@
+package com.tracker.habittracker.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AdmissionControlFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // Buckets of 2 refilling once a minute, and room for 1000 habit-days of stats at once
+        TokenBucket.Limit limit = new TokenBucket.Limit(1 / 60.0, 2);
+        filter = new AdmissionControlFilter(limit, limit, 100, 1000, () -> 10, meterRegistry);
+    }
+
+    private static MockHttpServletRequest request(String method, String uri, String client) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr(client);
+        return request;
+    }
+
+    private MockHttpServletResponse run(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> {});
+        return response;
+    }
+
+    // Test the token bucket allows its burst, then refills one token per interval
+    @Test
+    void testTokenBucketRefills() {
+        TokenBucket bucket = new TokenBucket(new TokenBucket.Limit(10, 2));
+        long now = 1_000_000_000L;
+
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(100_000_000L, bucket.tryAcquire(now));
+        assertEquals(40_000_000L, bucket.tryAcquire(now + 60_000_000L));
+        assertEquals(0, bucket.tryAcquire(now + 100_000_000L));
+    }
+
+    // Test a client over its write rate gets 429 with Retry-After while other clients and reads pass
+    @Test
+    void testRateLimitsWritesPerClient() throws Exception {
+        assertEquals(200, run(request("POST", "/api/habits/1/mark", "10.0.0.1")).getStatus());
+        assertEquals(200, run(request("POST", "/api/habits/1/mark", "10.0.0.1")).getStatus());
+
+        MockHttpServletResponse rejected = run(request("POST", "/api/habits/1/mark", "10.0.0.1"));
+        assertEquals(429, rejected.getStatus());
+        assertEquals("60", rejected.getHeader("Retry-After"));
+        assertEquals(200, run(request("POST", "/api/habits/1/mark", "10.0.0.2")).getStatus());
+        assertEquals(200, run(request("GET", "/api/habits", "10.0.0.1")).getStatus());
+        assertEquals(1, meterRegistry.get("http.server.requests.rejected").tag("reason", "rate").counter().count());
+    }
+
+    // Test stats requests are weighted by days times habits and rejected when the budget is used up
+    @Test
+    void testStatsCostBudget() throws Exception {
+        MockHttpServletRequest month = request("GET", "/api/habits/stats", "10.0.0.1");
+        month.setParameter("month", "2");
+        month.setParameter("year", "2025");
+        assertEquals(280, filter.statsCost(month, "/api/habits/stats"));
+        MockHttpServletRequest rolling = request("GET", "/api/habits/stats/rolling", "10.0.0.1");
+        rolling.setParameter("start", "2025-01-01");
+        rolling.setParameter("end", "2025-01-10");
+        rolling.setParameter("windows", "7,30");
+        rolling.setParameter("ids", "1,2");
+        assertEquals(78, filter.statsCost(rolling, "/api/habits/stats/rolling"));
+
+        // A year of all 10 habits takes the whole budget while it runs
+        MockHttpServletRequest year = request("GET", "/api/habits/stats/range", "10.0.0.1");
+        year.setParameter("start", "2025-01-01");
+        year.setParameter("end", "2025-12-31");
+        AtomicInteger nestedStatus = new AtomicInteger();
+        filter.doFilter(year, new MockHttpServletResponse(), (req, res) -> {
+            try {
+                nestedStatus.set(run(month).getStatus());
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        assertEquals(429, nestedStatus.get());
+        // The budget is released once the year is done
+        month.setRemoteAddr("10.0.0.2");
+        assertEquals(200, run(month).getStatus());
+        assertEquals(1, meterRegistry.get("http.server.requests.rejected").tag("reason", "cost").counter().count());
+    }
+}
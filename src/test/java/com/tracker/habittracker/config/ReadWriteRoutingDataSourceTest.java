@@ -0,0 +1,92 @@
+package com.tracker.habittracker.config;
+
+import jakarta.servlet.http.Cookie;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    // Two in-memory databases standing in for the primary and the replica, each naming itself
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table if not exists server (name varchar(20))");
+        jdbc.update("delete from server");
+        jdbc.update("insert into server values (?)", name);
+        return dataSource;
+    }
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = new ReadWriteRoutingDataSource(database("primary"), database("replica"));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    private String server() {
+        return jdbcTemplate.queryForObject("select name from server", String.class);
+    }
+
+    private String serverInRequest(MockHttpServletRequest request, MockHttpServletResponse response) throws Exception {
+        AtomicReference<String> server = new AtomicReference<>();
+        new ReadYourWritesFilter(Duration.ofSeconds(5)).doFilter(request, response,
+                (req, res) -> server.set(readOnly.execute(status -> server())));
+        return server.get();
+    }
+
+    // Test read-only transactions read the replica and all other work uses the primary
+    @Test
+    void testRoutesByTransactionReadOnlyFlag() {
+        assertEquals("replica", readOnly.execute(status -> server()));
+        assertEquals("primary", readWrite.execute(status -> server()));
+        assertEquals("primary", server());
+    }
+
+    // Test readPrimary() sends the read-only transactions it runs to the primary
+    @Test
+    void testReadPrimary() {
+        assertEquals("primary", ReadWriteRoutingDataSource.readPrimary(() -> readOnly.execute(status -> server())));
+        assertEquals("replica", readOnly.execute(status -> server()));
+    }
+
+    // Test a write pins its client to the primary until the cookie it sets expires
+    @Test
+    void testReadYourWritesPinsToPrimary() throws Exception {
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        assertEquals("primary", serverInRequest(new MockHttpServletRequest("POST", "/api/habits"), writeResponse));
+        Cookie cookie = writeResponse.getCookie(ReadYourWritesFilter.COOKIE);
+        assertNotNull(cookie);
+        assertEquals(5, cookie.getMaxAge());
+
+        MockHttpServletRequest pinned = new MockHttpServletRequest("GET", "/api/habits/stats");
+        pinned.setCookies(cookie);
+        assertEquals("primary", serverInRequest(pinned, new MockHttpServletResponse()));
+
+        MockHttpServletRequest expired = new MockHttpServletRequest("GET", "/api/habits/stats");
+        expired.setCookies(new Cookie(ReadYourWritesFilter.COOKIE, Long.toString(System.currentTimeMillis() - 1)));
+        assertEquals("replica", serverInRequest(expired, new MockHttpServletResponse()));
+        assertEquals("replica", serverInRequest(new MockHttpServletRequest("GET", "/api/habits/stats"),
+                new MockHttpServletResponse()));
+        assertFalse(ReadYourWritesFilter.isPinned());
+    }
+}
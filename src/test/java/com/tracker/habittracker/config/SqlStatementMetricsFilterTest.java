@@ -0,0 +1,75 @@
+package com.tracker.habittracker.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SqlStatementMetricsFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        dataSource = new StatementCountingDataSource(target);
+    }
+
+    private void runRequest(int statements) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/habits/stats/range");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/habits/stats/range");
+        new SqlStatementMetricsFilter(meterRegistry, 2).doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> {
+                    try (Connection connection = dataSource.getConnection()) {
+                        for (int i = 0; i < statements; i++) {
+                            connection.prepareStatement("select 1");
+                        }
+                        connection.getAutoCommit();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+    }
+
+    // Test statements are counted per request and tagged with the URI template
+    @Test
+    void testRecordsStatementsPerRequest() throws Exception {
+        runRequest(2);
+        runRequest(1);
+
+        var summary = meterRegistry.get("http.server.requests.sql.statements")
+                .tag("uri", "/api/habits/stats/range").summary();
+        assertEquals(2, summary.count());
+        assertEquals(3, summary.totalAmount());
+        assertNull(meterRegistry.find("http.server.requests.sql.threshold.exceeded").counter());
+    }
+
+    // Test requests over the threshold are flagged
+    @Test
+    void testFlagsRequestsOverThreshold() throws Exception {
+        runRequest(5);
+
+        assertEquals(1, meterRegistry.get("http.server.requests.sql.threshold.exceeded")
+                .tag("method", "GET").counter().count());
+    }
+
+    // Test statements outside a request are not counted
+    @Test
+    void testIgnoresStatementsOutsideRequests() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.createStatement();
+        }
+        assertEquals(0, SqlStatementCounter.stop());
+    }
+}
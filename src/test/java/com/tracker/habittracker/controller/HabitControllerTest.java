@@ -2,20 +2,37 @@ package com.tracker.habittracker.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tracker.habittracker.dto.CreateHabitRequest;
+import com.tracker.habittracker.dto.HabitLogResponse;
+import com.tracker.habittracker.dto.HabitSummary;
+import com.tracker.habittracker.dto.KeysetPage;
 import com.tracker.habittracker.model.Habit;
 import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.service.BulkMarkService;
+import com.tracker.habittracker.service.DataVersions;
+import com.tracker.habittracker.service.HabitAnalyticsService;
+import com.tracker.habittracker.service.HabitLogExportService;
+import com.tracker.habittracker.service.HabitLogImportService;
 import com.tracker.habittracker.service.HabitLogService;
 import com.tracker.habittracker.service.HabitService;
+import com.tracker.habittracker.service.HabitStatsService;
+import com.tracker.habittracker.service.IdempotencyService;
+import com.tracker.habittracker.service.InMemoryIdempotencyStore;
+import com.tracker.habittracker.service.StreakService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -23,6 +40,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(HabitController.class)
+@Import({DataVersions.class, IdempotencyService.class, InMemoryIdempotencyStore.class, SimpleMeterRegistry.class})
 class HabitControllerTest {
 
     @Autowired
@@ -34,9 +52,30 @@ class HabitControllerTest {
     @MockBean
     private HabitLogService habitLogService;
 
+    @MockBean
+    private HabitStatsService habitStatsService;
+
+    @MockBean
+    private BulkMarkService bulkMarkService;
+
+    @MockBean
+    private StreakService streakService;
+
+    @MockBean
+    private HabitLogExportService habitLogExportService;
+
+    @MockBean
+    private HabitLogImportService habitLogImportService;
+
+    @MockBean
+    private HabitAnalyticsService habitAnalyticsService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private DataVersions dataVersions;
+
     private Habit habit1;
     private Habit habit2;
 
@@ -49,14 +88,89 @@ class HabitControllerTest {
     // Test GET /api/habits
     @Test
     void testGetAllHabits() throws Exception {
-        when(habitService.getAllHabits()).thenReturn(Arrays.asList(habit1, habit2));
+        when(habitService.getHabitPage(null, 100)).thenReturn(new KeysetPage<>(Arrays.asList(summary(habit1), summary(habit2)), null));
+        when(streakService.getStreaks(any())).thenReturn(java.util.Map.of(1L, new StreakService.Streak(3, 5)));
 
         mockMvc.perform(get("/api/habits"))
                 .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
                 .andExpect(jsonPath("$[0].name").value("Coding"))
-                .andExpect(jsonPath("$[1].name").value("Exercise"));
+                .andExpect(jsonPath("$[0].frequency").value("daily"))
+                .andExpect(jsonPath("$[0].currentStreak").value(3))
+                .andExpect(jsonPath("$[0].longestStreak").value(5))
+                .andExpect(jsonPath("$[1].name").value("Exercise"))
+                .andExpect(jsonPath("$[1].currentStreak").value(0));
+
+        verify(habitService, times(1)).getHabitPage(null, 100);
+    }
+
+    // Test GET /api/habits passes the cursor through and returns the next one in a header
+    @Test
+    void testGetHabitsPage() throws Exception {
+        when(habitService.getHabitPage(1L, 1)).thenReturn(new KeysetPage<>(List.of(summary(habit2)), "2"));
+
+        mockMvc.perform(get("/api/habits").param("after", "1").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "2"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("Exercise"));
+
+        mockMvc.perform(get("/api/habits").param("limit", "5000"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Test GET /api/habits/{id}/logs pages through logs and rejects malformed cursors
+    @Test
+    void testGetHabitLogsPage() throws Exception {
+        LocalDate start = LocalDate.of(2025, 3, 1);
+        LocalDate end = LocalDate.of(2025, 3, 31);
+        HabitLogResponse log = new HabitLogResponse(7L, LocalDate.of(2025, 3, 2));
+        when(habitService.getHabitById(1L)).thenReturn(habit1);
+        when(habitLogService.getHabitLogs(habit1, start, end, null, 1))
+                .thenReturn(new KeysetPage<>(List.of(log), "2025-03-02_7"));
+        when(habitLogService.getHabitLogs(habit1, start, end, "bad", 100))
+                .thenThrow(new IllegalArgumentException("Invalid cursor: bad"));
+
+        mockMvc.perform(get("/api/habits/1/logs").param("start", "2025-03-01").param("end", "2025-03-31")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "2025-03-02_7"))
+                .andExpect(content().json("[{\"id\":7,\"date\":\"2025-03-02\"}]", true));
 
-        verify(habitService, times(1)).getAllHabits();
+        mockMvc.perform(get("/api/habits/1/logs").param("start", "2025-03-01").param("end", "2025-03-31")
+                        .param("after", "bad"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Test a retried mark or unmark with the same Idempotency-Key is answered without running it again, per client
+    @Test
+    void testIdempotentMarks() throws Exception {
+        when(habitService.getHabitById(1L)).thenReturn(habit1);
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/habits/1/markOn").param("date", "2025-03-01")
+                            .header("Idempotency-Key", "mark-1"))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(post("/api/habits/1/markOn").param("date", "2025-03-01")
+                        .header("Idempotency-Key", "mark-1"))
+                .andExpect(header().string("Idempotent-Replayed", "true"));
+        mockMvc.perform(delete("/api/habits/1/unmarkOn").param("date", "2025-03-01")
+                        .header("Idempotency-Key", "mark-1"))
+                .andExpect(status().isUnprocessableEntity());
+        // Another client's key of the same name is its own
+        mockMvc.perform(post("/api/habits/1/markOn").param("date", "2025-03-01")
+                        .header("Idempotency-Key", "mark-1")
+                        .with(request -> {
+                            request.setRemoteAddr("10.0.0.2");
+                            return request;
+                        }))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+
+        verify(habitLogService, times(2)).markHabitOnDate(habit1, LocalDate.of(2025, 3, 1));
+        verify(habitLogService, never()).unmarkHabitOnDate(any(), any());
+        verify(habitService, times(2)).getHabitById(1L);
     }
 
     // Test POST /api/habits
@@ -77,7 +191,9 @@ class HabitControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.name").value("Reading"))
                 .andExpect(jsonPath("$.description").value("Read books daily"))
-                .andExpect(jsonPath("$.frequency").value("daily"));
+                .andExpect(jsonPath("$.frequency").value("daily"))
+                .andExpect(jsonPath("$.currentStreak").value(0))
+                .andExpect(jsonPath("$.longestStreak").value(0));
 
         verify(habitService, times(1)).addHabit(any(CreateHabitRequest.class));
     }
@@ -93,4 +209,108 @@ class HabitControllerTest {
 
         verify(habitService, times(1)).deleteHabit(habitId);
     }
+
+    // Test GET /api/habits/stats
+    @Test
+    void testGetStats() throws Exception {
+        when(habitStatsService.getMonthlyStats(2025, 3)).thenReturn(java.util.Map.of("Coding", 12));
+
+        mockMvc.perform(get("/api/habits/stats").param("month", "3").param("year", "2025"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.Coding").value(12));
+
+        verify(habitStatsService, times(1)).getMonthlyStats(2025, 3);
+        verifyNoInteractions(habitLogService);
+    }
+
+    // Test GET /api/habits/logs returns completed dates grouped by habit
+    @Test
+    void testGetLogsForHabits() throws Exception {
+        java.time.LocalDate start = java.time.LocalDate.of(2025, 3, 1);
+        java.time.LocalDate end = java.time.LocalDate.of(2025, 3, 31);
+        when(habitLogService.getCompletedDates(Arrays.asList(1L, 2L), start, end))
+                .thenReturn(java.util.Map.of(1L, Arrays.asList(java.time.LocalDate.of(2025, 3, 2)), 2L, java.util.List.of()));
+
+        mockMvc.perform(get("/api/habits/logs")
+                        .param("start", "2025-03-01")
+                        .param("end", "2025-03-31")
+                        .param("ids", "1,2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['1'][0]").value("2025-03-02"))
+                .andExpect(jsonPath("$['2']").isEmpty());
+
+        verify(habitService, never()).getHabitById(any());
+    }
+
+    // Test GET /api/habits/stats answers a current ETag with 304 and recomputes after a write
+    @Test
+    void testGetStatsConditional() throws Exception {
+        when(habitStatsService.getMonthlyStats(2025, 3)).thenReturn(java.util.Map.of("Coding", 12));
+
+        String etag = mockMvc.perform(get("/api/habits/stats").param("month", "3").param("year", "2025"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=3600, private"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/habits/stats").param("month", "3").param("year", "2025")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        verify(habitStatsService, times(1)).getMonthlyStats(2025, 3);
+
+        dataVersions.bump(2L);
+        mockMvc.perform(get("/api/habits/stats").param("month", "3").param("year", "2025")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.Coding").value(12));
+        verify(habitStatsService, times(2)).getMonthlyStats(2025, 3);
+    }
+
+    // Test GET /api/habits/{id}/logs only changes its ETag on writes to that habit
+    @Test
+    void testGetHabitLogsConditional() throws Exception {
+        LocalDate today = LocalDate.now();
+        when(habitService.getHabitById(1L)).thenReturn(habit1);
+        when(habitLogService.getHabitLogs(habit1, today, today, null, 100))
+                .thenReturn(new KeysetPage<>(List.of(new HabitLogResponse(null, today)), null));
+
+        String etag = mockMvc.perform(get("/api/habits/1/logs").param("start", today.toString())
+                        .param("end", today.toString()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        dataVersions.bump(2L);
+        mockMvc.perform(get("/api/habits/1/logs").param("start", today.toString()).param("end", today.toString())
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        dataVersions.bump(1L);
+        mockMvc.perform(get("/api/habits/1/logs").param("start", today.toString()).param("end", today.toString())
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        verify(habitLogService, times(2)).getHabitLogs(habit1, today, today, null, 100);
+    }
+
+    // Test GET /api/habits/stats/rolling defaults to 7/30/90-day windows and rejects bad windows
+    @Test
+    void testGetRollingStats() throws Exception {
+        LocalDate start = LocalDate.of(2025, 3, 1);
+        LocalDate end = LocalDate.of(2025, 3, 2);
+        when(habitAnalyticsService.getRollingSeries(null, start, end, List.of(7, 30, 90)))
+                .thenReturn(List.of(new com.tracker.habittracker.dto.RollingSeries(1L, "Coding", Frequency.DAILY,
+                        start, end, java.util.Map.of(7, new double[]{0.5, 0.25}))));
+
+        mockMvc.perform(get("/api/habits/stats/rolling").param("start", "2025-03-01").param("end", "2025-03-02"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].rates['7'][1]").value(0.25));
+
+        mockMvc.perform(get("/api/habits/stats/rolling").param("start", "2025-03-01").param("end", "2025-03-02")
+                        .param("windows", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static HabitSummary summary(Habit habit) {
+        return new HabitSummary(habit.getId(), habit.getName(), habit.getDescription(), habit.getFrequency());
+    }
 }
@@ -0,0 +1,47 @@
+package com.tracker.habittracker.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompletionCalendarTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Test mark() ignores dates outside the calendar
+    @Test
+    void testMarkInsideAndOutsideRange() {
+        CompletionCalendar calendar = new CompletionCalendar(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31));
+
+        calendar.mark(LocalDate.of(2025, 1, 1));
+        calendar.mark(LocalDate.of(2025, 1, 31));
+        calendar.mark(LocalDate.of(2025, 2, 1));
+        calendar.mark(LocalDate.of(2024, 12, 31));
+
+        assertEquals(2, calendar.getCompletions());
+        assertTrue(calendar.isMarked(LocalDate.of(2025, 1, 31)));
+        assertFalse(calendar.isMarked(LocalDate.of(2025, 2, 1)));
+    }
+
+    // Test a full year serializes to start, day count and a padded base64 bitmap
+    @Test
+    void testSerializeYear() throws Exception {
+        CompletionCalendar calendar = new CompletionCalendar(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31));
+        calendar.mark(LocalDate.of(2025, 1, 1));
+        calendar.mark(LocalDate.of(2025, 1, 10));
+
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsString(calendar));
+
+        assertEquals("2025-01-01", json.get("start").asText());
+        assertEquals(365, json.get("days").asInt());
+        byte[] bitmap = Base64.getDecoder().decode(json.get("bitmap").asText());
+        assertEquals(46, bitmap.length);
+        assertEquals(0b0000_0001, bitmap[0]);
+        assertEquals(0b0000_0010, bitmap[1]);
+    }
+}
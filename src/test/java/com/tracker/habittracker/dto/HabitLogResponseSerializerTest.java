@@ -0,0 +1,41 @@
+package com.tracker.habittracker.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.tracker.habittracker.model.Frequency;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HabitLogResponseSerializerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    // Test logs serialize to id and ISO date, with a null id for buffered marks and ISO's form for wide years
+    @Test
+    void testSerializeLogs() throws Exception {
+        List<HabitLogResponse> logs = List.of(
+                new HabitLogResponse(7L, LocalDate.of(2025, 3, 2)),
+                new HabitLogResponse(null, LocalDate.of(987, 11, 30)),
+                new HabitLogResponse(8L, LocalDate.of(12025, 1, 1)));
+
+        assertEquals("[{\"id\":7,\"date\":\"2025-03-02\"},{\"id\":null,\"date\":\"0987-11-30\"}," +
+                        "{\"id\":8,\"date\":\"+12025-01-01\"}]",
+                objectMapper.writeValueAsString(logs));
+    }
+
+    // Test habit responses keep the field names and lowercase frequency of the default serializer
+    @Test
+    void testSerializeHabitResponse() throws Exception {
+        HabitResponse habit = new HabitResponse(1L, "Coding", null, Frequency.WEEKLY, 2, 5);
+
+        assertEquals("{\"id\":1,\"name\":\"Coding\",\"description\":null,\"frequency\":\"weekly\"," +
+                "\"currentStreak\":2,\"longestStreak\":5}", objectMapper.writeValueAsString(habit));
+    }
+}
@@ -0,0 +1,98 @@
+package com.tracker.habittracker.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.Year;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MigrationTest {
+
+    private static EmbeddedPostgres postgres;
+
+    @BeforeAll
+    static void startPostgres() throws IOException {
+        postgres = EmbeddedPostgres.start();
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        postgres.close();
+    }
+
+    // A fresh database per test on the shared server
+    private static DataSource database(String name) {
+        new JdbcTemplate(postgres.getPostgresDatabase()).execute("create database " + name);
+        return postgres.getDatabase("postgres", name);
+    }
+
+    // Migrates like the application (baseline-on-migrate) and returns the resulting schema version
+    private static String migrate(DataSource dataSource, String... locations) {
+        Flyway flyway = Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .locations(locations)
+                .load();
+        flyway.migrate();
+        return flyway.info().current().getVersion().getVersion();
+    }
+
+    // Test a database created by ddl-auto=update before the migrations is baselined and upgraded to the full schema
+    @Test
+    void testUpgradesPreMigrationSchema() {
+        DataSource dataSource = database("upgrade");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table habits (id bigint generated by default as identity, description varchar(255), " +
+                "frequency varchar(255) check (frequency in ('DAILY','WEEKLY','MONTHLY')), name varchar(255), " +
+                "primary key (id))");
+        jdbc.execute("create table habit_logs (date date, habit_id bigint, " +
+                "id bigint generated by default as identity, primary key (id))");
+        jdbc.execute("alter table if exists habit_logs add constraint FKhabit foreign key (habit_id) references habits");
+        jdbc.update("insert into habits (name, frequency) values ('Coding', 'DAILY'), ('Gym', 'WEEKLY')");
+        // Without a unique period the old schema allowed repeats within a day or week
+        jdbc.update("insert into habit_logs (habit_id, date) values (1, '2025-03-03'), (1, '2025-03-03'), " +
+                "(1, '2025-03-04'), (2, '2025-03-03'), (2, '2025-03-05'), (2, '2025-04-01')");
+
+        assertEquals("10", migrate(dataSource, "classpath:db/migration"));
+
+        assertEquals(List.of("2025-03-03", "2025-03-04", "2025-03-03", "2025-03-31"), jdbc.queryForList(
+                "select period_key::text from habit_logs order by habit_id, date", String.class));
+        assertEquals(List.of(Map.of("habit_id", 1L, "year", 2025, "month", 3, "completions", 2L),
+                        Map.of("habit_id", 2L, "year", 2025, "month", 3, "completions", 1L),
+                        Map.of("habit_id", 2L, "year", 2025, "month", 4, "completions", 1L)),
+                jdbc.queryForList("select habit_id, year, month, completions from habit_monthly_rollup " +
+                        "order by habit_id, year, month"));
+        assertThrows(DuplicateKeyException.class, () -> jdbc.update(
+                "insert into habit_logs (habit_id, date, period_key) values (1, '2025-03-04', '2025-03-04')"));
+        assertEquals(0, jdbc.queryForObject("select count(*) from habits where deleted_at is not null",
+                Integer.class));
+    }
+
+    // Test an empty database gets the whole schema, including the optional partitioning
+    @Test
+    void testMigratesEmptyDatabaseWithPartitioning() {
+        DataSource dataSource = database("fresh");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+        migrate(dataSource, "classpath:db/migration", "classpath:db/partitioning");
+        jdbc.update("insert into habits (name, frequency) values ('Coding', 'DAILY')");
+        jdbc.update("insert into habit_logs (habit_id, date, period_key) values (1, current_date, current_date)");
+
+        // Partitions are created for the current year onwards
+        assertEquals("habit_logs_" + Year.now(), jdbc.queryForObject(
+                "select tableoid::regclass::text from habit_logs", String.class));
+        assertThrows(DuplicateKeyException.class, () -> jdbc.update(
+                "insert into habit_logs (habit_id, date, period_key) values (1, current_date, current_date)"));
+        assertEquals(0, jdbc.queryForObject("select count(*) from habit_monthly_rollup", Integer.class));
+    }
+}
@@ -0,0 +1,182 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.dto.BulkMarkRequest;
+import com.tracker.habittracker.dto.BulkMarkResult;
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.model.Habit;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository.LogRow;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository.PeriodRange;
+import com.tracker.habittracker.repository.HabitLogRepository;
+import com.tracker.habittracker.repository.HabitMonthlyRollupJdbcRepository;
+import com.tracker.habittracker.repository.HabitMonthlyRollupJdbcRepository.HabitMonth;
+import com.tracker.habittracker.repository.HabitRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class BulkMarkServiceTest {
+
+    @Mock
+    private HabitRepository habitRepository;
+
+    @Mock
+    private HabitLogRepository habitLogRepository;
+
+    @Mock
+    private HabitLogJdbcRepository habitLogJdbcRepository;
+
+    @Mock
+    private HabitMonthlyRollupJdbcRepository rollupJdbcRepository;
+
+    @Mock
+    private StreakService streakService;
+
+    @Mock
+    private WriteBehindBuffer writeBehindBuffer;
+
+    @Mock
+    private ObjectProvider<WriteBehindBuffer> writeBehindBufferProvider;
+
+    private BulkMarkService bulkMarkService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(writeBehindBufferProvider.getObject()).thenReturn(writeBehindBuffer);
+        CompletionIndex completionIndex = new CompletionIndex(habitLogRepository, DataSize.ofMegabytes(1));
+        bulkMarkService = new BulkMarkService(habitRepository, habitLogJdbcRepository, rollupJdbcRepository,
+                completionIndex, streakService, new DataVersions(), mock(HabitEventService.class),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), writeBehindBufferProvider);
+
+        Habit daily = new Habit(1L, "Coding", "Practice coding daily", Frequency.DAILY);
+        Habit weekly = new Habit(2L, "Exercise", "Go to gym", Frequency.WEEKLY);
+        when(habitRepository.findAllById(any())).thenReturn(Arrays.asList(daily, weekly));
+        when(habitLogRepository.findDatesByHabitId(1L)).thenReturn(List.of(LocalDate.of(2025, 3, 1)));
+        when(habitLogRepository.findDatesByHabitId(2L)).thenReturn(Collections.emptyList());
+        // Every write takes effect unless a test says otherwise
+        when(habitLogJdbcRepository.batchInsert(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(habitLogJdbcRepository.batchDeletePeriods(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private static BulkMarkRequest.Operation op(Long habitId, String date, String action) {
+        BulkMarkRequest.Operation op = new BulkMarkRequest.Operation();
+        op.habitId = habitId;
+        op.date = date;
+        op.action = action;
+        return op;
+    }
+
+    // Test per-item results follow request order while only final states are written
+    @Test
+    void testApplyCoalescesOperations() {
+        when(habitLogJdbcRepository.batchDeletePeriods(anyList()))
+                .thenReturn(List.of(new PeriodRange(1L, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 1))));
+
+        List<BulkMarkResult> results = bulkMarkService.apply(Arrays.asList(
+                op(2L, "2025-03-03", "mark"),
+                op(2L, "2025-03-05", "mark"),
+                op(1L, "2025-03-01", "unmark"),
+                op(1L, "2025-03-02", "mark"),
+                op(1L, "2025-03-02", "unmark"),
+                op(9L, "2025-03-02", "mark"),
+                op(1L, "not-a-date", "mark"),
+                op(1L, "2025-03-02", "toggle")));
+
+        assertEquals(Arrays.asList("marked", "already_marked", "unmarked", "marked", "unmarked",
+                        "habit_not_found", "invalid", "invalid"),
+                results.stream().map(BulkMarkResult::status).toList());
+
+        verify(habitRepository, times(1)).findAllById(any());
+        verify(habitLogJdbcRepository).batchInsert(
+                List.of(new LogRow(2L, LocalDate.of(2025, 3, 3), LocalDate.of(2025, 3, 3))));
+        verify(habitLogJdbcRepository).batchDeletePeriods(List.of(
+                new PeriodRange(1L, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 1)),
+                new PeriodRange(1L, LocalDate.of(2025, 3, 2), LocalDate.of(2025, 3, 2))));
+        verify(rollupJdbcRepository).refreshMonths(new java.util.LinkedHashSet<>(List.of(
+                new HabitMonth(2L, 2025, 3), new HabitMonth(1L, 2025, 3))));
+        verify(streakService).evict(1L);
+        verify(streakService).evict(2L);
+    }
+
+    // Test a period another writer already completed is reported as it was stored, and changes nothing else
+    @Test
+    void testApplyReportsSkippedInsert() {
+        when(habitLogJdbcRepository.batchInsert(anyList())).thenReturn(List.of());
+
+        List<BulkMarkResult> results = bulkMarkService.apply(Arrays.asList(
+                op(2L, "2025-03-03", "mark"),
+                op(2L, "2025-03-04", "unmark"),
+                op(2L, "2025-03-05", "mark")));
+
+        assertEquals(Arrays.asList("already_marked", "unmarked", "marked"),
+                results.stream().map(BulkMarkResult::status).toList());
+        verifyNoInteractions(rollupJdbcRepository);
+        verify(streakService).evict(2L);
+    }
+
+    // Test buffered single marks are flushed before the operations are evaluated, again if one slips in
+    @Test
+    void testApplyFlushesWriteBehindBuffer() {
+        when(writeBehindBuffer.isEnabled()).thenReturn(true);
+        when(writeBehindBuffer.hasChanges(any())).thenReturn(true, false);
+
+        bulkMarkService.apply(List.of(op(2L, "2025-03-03", "mark")));
+
+        var inOrder = inOrder(writeBehindBuffer, habitLogJdbcRepository);
+        inOrder.verify(writeBehindBuffer, times(2)).flush();
+        inOrder.verify(habitLogJdbcRepository).batchInsert(anyList());
+    }
+
+    // Test a batch gives up instead of flushing forever while its habits keep getting buffered marks
+    @Test
+    void testApplyGivesUpWhenBufferKeepsChanging() {
+        when(writeBehindBuffer.isEnabled()).thenReturn(true);
+        when(writeBehindBuffer.hasChanges(any())).thenReturn(true);
+
+        assertThrows(IllegalStateException.class, () -> bulkMarkService.apply(List.of(op(2L, "2025-03-03", "mark"))));
+
+        verify(writeBehindBuffer, times(3)).flush();
+        verifyNoInteractions(habitLogJdbcRepository);
+    }
+
+    // Test a batch with no net change only makes sure the period stays unmarked
+    @Test
+    void testApplyWithoutNetChange() {
+        when(habitLogJdbcRepository.batchDeletePeriods(anyList())).thenReturn(List.of());
+
+        bulkMarkService.apply(Arrays.asList(
+                op(2L, "2025-03-03", "mark"),
+                op(2L, "2025-03-04", "unmark")));
+
+        verify(habitLogJdbcRepository, never()).batchInsert(anyList());
+        verify(habitLogJdbcRepository).batchDeletePeriods(
+                List.of(new PeriodRange(2L, LocalDate.of(2025, 3, 3), LocalDate.of(2025, 3, 9))));
+        verifyNoInteractions(rollupJdbcRepository);
+    }
+
+    // Test an unmark deletes a completion the index does not know of, e.g. written by another instance
+    @Test
+    void testApplyDeletesCompletionMissingFromIndex() {
+        List<BulkMarkResult> results = bulkMarkService.apply(List.of(op(2L, "2025-03-04", "unmark")));
+
+        assertEquals(List.of("unmarked"), results.stream().map(BulkMarkResult::status).toList());
+        verify(rollupJdbcRepository).refreshMonths(new java.util.LinkedHashSet<>(List.of(new HabitMonth(2L, 2025, 3))));
+        verify(streakService).evict(2L);
+    }
+}
@@ -0,0 +1,86 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.model.Habit;
+import com.tracker.habittracker.repository.HabitLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CompletionIndexTest {
+
+    @Mock
+    private HabitLogRepository habitLogRepository;
+
+    private Habit daily;
+    private Habit weekly;
+    private Habit monthly;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        daily = new Habit(1L, "Coding", "Practice coding daily", Frequency.DAILY);
+        weekly = new Habit(2L, "Exercise", "Go to gym", Frequency.WEEKLY);
+        monthly = new Habit(3L, "Budget", "Review spending", Frequency.MONTHLY);
+        when(habitLogRepository.findDatesByHabitId(1L)).thenReturn(List.of(LocalDate.of(2025, 3, 10)));
+        when(habitLogRepository.findDatesByHabitId(2L)).thenReturn(List.of(LocalDate.of(2025, 3, 5)));
+        when(habitLogRepository.findDatesByHabitId(3L)).thenReturn(List.of());
+    }
+
+    // Test marks before and after the first loaded period are found, per period of the frequency
+    @Test
+    void testRecordsPeriodsAroundLoadedOnes() {
+        CompletionIndex index = new CompletionIndex(habitLogRepository, DataSize.ofMegabytes(1));
+
+        assertTrue(index.isMarked(weekly, LocalDate.of(2025, 3, 9)));
+        assertFalse(index.isMarked(weekly, LocalDate.of(2025, 3, 10)));
+
+        index.recordMark(daily, LocalDate.of(2024, 1, 1));
+        assertFalse(index.isMarked(daily, LocalDate.of(2024, 1, 1)));
+        index.recordMark(daily, LocalDate.of(2024, 1, 1));
+        index.recordMark(daily, LocalDate.of(2026, 1, 1));
+        index.recordUnmark(daily, LocalDate.of(2025, 3, 10));
+
+        assertTrue(index.isMarked(daily, LocalDate.of(2024, 1, 1)));
+        assertTrue(index.isMarked(daily, LocalDate.of(2026, 1, 1)));
+        assertFalse(index.isMarked(daily, LocalDate.of(2025, 3, 10)));
+    }
+
+    // Test the least recently used habits are evicted once the bitsets outgrow the size limit
+    @Test
+    void testEvictsLeastRecentlyUsedOverSizeLimit() {
+        CompletionIndex index = new CompletionIndex(habitLogRepository, DataSize.ofBytes(200));
+
+        index.isMarked(daily, LocalDate.of(2025, 3, 10));
+        index.isMarked(weekly, LocalDate.of(2025, 3, 5));
+        index.isMarked(daily, LocalDate.of(2025, 3, 10));
+        index.isMarked(monthly, LocalDate.of(2025, 3, 1));
+        index.isMarked(daily, LocalDate.of(2025, 3, 10));
+        index.isMarked(weekly, LocalDate.of(2025, 3, 5));
+
+        verify(habitLogRepository, times(1)).findDatesByHabitId(1L);
+        verify(habitLogRepository, times(2)).findDatesByHabitId(2L);
+    }
+
+    // Test a habit whose completions span too many periods is answered from the database
+    @Test
+    void testFallsBackToDatabaseForHugeSpans() {
+        when(habitLogRepository.findDatesByHabitId(1L))
+                .thenReturn(List.of(LocalDate.ofEpochDay(0), LocalDate.ofEpochDay(1 << 24)));
+        when(habitLogRepository.findDatesByHabitIdBetween(1L, LocalDate.ofEpochDay(0), LocalDate.ofEpochDay(0)))
+                .thenReturn(List.of(LocalDate.ofEpochDay(0)));
+        CompletionIndex index = new CompletionIndex(habitLogRepository, DataSize.ofMegabytes(1));
+
+        assertTrue(index.isMarked(daily, LocalDate.ofEpochDay(0)));
+        assertFalse(index.isMarked(daily, LocalDate.ofEpochDay(1)));
+        verify(habitLogRepository, times(2)).findDatesByHabitIdBetween(eq(1L), any(), any());
+    }
+}
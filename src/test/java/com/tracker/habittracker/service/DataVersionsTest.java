@@ -0,0 +1,58 @@
+package com.tracker.habittracker.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataVersionsTest {
+
+    private final DataVersions versions = new DataVersions();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // Test bump() outside a transaction moves the global and habit versions at once
+    @Test
+    void testBumpOutsideTransaction() {
+        versions.bump(List.of(1L, 2L));
+        versions.bump(List.of());
+
+        assertEquals(2, versions.global());
+        assertEquals(1, versions.habit(1L));
+        assertEquals(1, versions.habit(2L));
+        assertEquals(0, versions.habit(3L));
+    }
+
+    // Test bump() inside a transaction waits for the commit
+    @Test
+    void testBumpWaitsForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        versions.bump(1L);
+
+        assertEquals(0, versions.global());
+        assertEquals(0, versions.habit(1L));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(1, versions.global());
+        assertEquals(1, versions.habit(1L));
+    }
+
+    // Test etag() is weak and changes with its parts
+    @Test
+    void testEtag() {
+        String etag = versions.etag(3L, "2025-03-01");
+
+        assertTrue(etag.startsWith("W/\""));
+        assertTrue(etag.endsWith("-3-2025-03-01\""));
+        assertNotEquals(etag, versions.etag(4L, "2025-03-01"));
+    }
+}
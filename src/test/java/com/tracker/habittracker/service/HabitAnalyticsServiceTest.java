@@ -0,0 +1,118 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.dto.RollingSeries;
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.model.Habit;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository.LogDayConsumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class HabitAnalyticsServiceTest {
+
+    @Mock
+    private HabitService habitService;
+
+    @Mock
+    private HabitLogJdbcRepository habitLogJdbcRepository;
+
+    @Mock
+    private WriteBehindBuffer writeBehindBuffer;
+
+    private HabitAnalyticsService analyticsService;
+
+    private final Habit daily = new Habit(1L, "Coding", "Practice coding daily", Frequency.DAILY);
+    private final Habit weekly = new Habit(2L, "Exercise", "Go to gym", Frequency.WEEKLY);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        analyticsService = new HabitAnalyticsService(habitService, habitLogJdbcRepository, writeBehindBuffer,
+                mock(PlatformTransactionManager.class));
+        when(habitService.getAllHabits()).thenReturn(List.of(daily, weekly));
+    }
+
+    private void givenLogs(Long habitId, TreeSet<LocalDate> dates) {
+        doAnswer(inv -> {
+            LogDayConsumer consumer = inv.getArgument(3);
+            LocalDate from = inv.getArgument(1);
+            LocalDate to = inv.getArgument(2);
+            dates.subSet(from, true, to, true).forEach(d -> consumer.accept(habitId, (int) d.toEpochDay()));
+            return null;
+        }).when(habitLogJdbcRepository).forEachLogDay(any(), any(), any(), any());
+    }
+
+    // Test every window rate equals counting the window directly over the same denominator
+    @Test
+    void testMatchesDirectCount() {
+        Random random = new Random(42);
+        TreeSet<LocalDate> dates = new TreeSet<>();
+        for (LocalDate d = LocalDate.of(2024, 9, 1); d.isBefore(LocalDate.of(2025, 4, 1)); d = d.plusDays(1)) {
+            if (random.nextDouble() < 0.6) {
+                dates.add(d);
+            }
+        }
+        givenLogs(1L, dates);
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        LocalDate end = LocalDate.of(2025, 3, 31);
+
+        List<RollingSeries> series = analyticsService.getRollingSeries(List.of(1L), start, end, List.of(7, 30, 90));
+
+        assertEquals(1, series.size());
+        for (int window : List.of(7, 30, 90)) {
+            double[] rates = series.get(0).rates().get(window);
+            assertEquals(90, rates.length);
+            for (int i = 0; i < rates.length; i++) {
+                LocalDate day = start.plusDays(i);
+                LocalDate windowStart = day.minusDays(window - 1);
+                int completions = dates.subSet(windowStart, true, day, true).size();
+                assertEquals((double) completions / Frequency.DAILY.periodsBetween(windowStart, day), rates[i], 1e-9);
+            }
+        }
+    }
+
+    // Test weekly habits use periods as the denominator, like range stats
+    @Test
+    void testWeeklyDenominator() {
+        givenLogs(2L, new TreeSet<>(List.of(LocalDate.of(2025, 3, 3), LocalDate.of(2025, 3, 10))));
+
+        List<RollingSeries> series = analyticsService.getRollingSeries(List.of(2L),
+                LocalDate.of(2025, 3, 16), LocalDate.of(2025, 3, 16), List.of(14));
+
+        // Two completions over the two weeks of the window
+        assertEquals(1.0, series.get(0).rates().get(14)[0], 1e-9);
+        // Logs are read once, from the start of the first window
+        verify(habitLogJdbcRepository).forEachLogDay(eq(Set.of(2L)), eq(LocalDate.of(2025, 3, 3)),
+                eq(LocalDate.of(2025, 3, 16)), any());
+    }
+
+    // Test unflushed write-behind changes are counted
+    @Test
+    void testIncludesPendingChanges() {
+        givenLogs(1L, new TreeSet<>());
+        when(writeBehindBuffer.isEnabled()).thenReturn(true);
+        when(writeBehindBuffer.changesBetween(any(), any()))
+                .thenReturn(List.of(new WriteBehindBuffer.Change(daily, LocalDate.of(2025, 3, 2), true)));
+
+        List<RollingSeries> series = analyticsService.getRollingSeries(null,
+                LocalDate.of(2025, 3, 2), LocalDate.of(2025, 3, 2), List.of(2));
+
+        assertEquals(2, series.size());
+        assertEquals(0.5, series.get(0).rates().get(2)[0], 1e-9);
+        assertEquals(0.0, series.get(1).rates().get(2)[0], 1e-9);
+    }
+}
@@ -0,0 +1,113 @@
+package com.tracker.habittracker.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.model.Habit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class HabitEventServiceTest {
+
+    @Mock
+    private HabitStatsService habitStatsService;
+
+    @Mock
+    private ObjectProvider<HabitStatsService> habitStatsProvider;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService senders = Executors.newSingleThreadExecutor();
+    private final CountDownLatch sendersBlocked = new CountDownLatch(1);
+
+    private HabitEventService eventService;
+
+    private final Habit weekly = new Habit(1L, "Exercise", "Go to gym", Frequency.WEEKLY);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(habitStatsProvider.getObject()).thenReturn(habitStatsService);
+        eventService = new HabitEventService(habitStatsProvider, new ObjectMapper().findAndRegisterModules(),
+                meterRegistry, 2, 3, Duration.ofMinutes(1), senders);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sendersBlocked.countDown();
+        senders.shutdownNow();
+    }
+
+    // Keeps the single sender busy so queued events are not delivered
+    private void blockSenders() {
+        senders.execute(() -> {
+            try {
+                sendersBlocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    // Test nothing is computed for a change when no one is subscribed
+    @Test
+    void testNoSubscribersSkipsWork() {
+        eventService.completionChanged(weekly, LocalDate.of(2025, 3, 5), true);
+
+        verifyNoInteractions(habitStatsService);
+    }
+
+    // Test a completion event reads the habit's count for the month of the logged date, off the writer's thread
+    @Test
+    void testCompletionReadsMonthCount() {
+        blockSenders();
+        eventService.subscribe();
+
+        eventService.completionChanged(weekly, LocalDate.of(2025, 3, 5), true);
+        verifyNoInteractions(habitStatsService);
+
+        sendersBlocked.countDown();
+        verify(habitStatsService, timeout(1000)).getMonthCompletions(1L, 2025, 3);
+    }
+
+    // Test a subscriber whose queue passes the buffer size is disconnected
+    @Test
+    void testSlowSubscriberIsEvicted() {
+        blockSenders();
+        SseEmitter slow = eventService.subscribe();
+        assertNotNull(slow);
+        assertEquals(1, eventService.subscriberCount());
+
+        // The opening heartbeat plus two events fill the buffer of three
+        eventService.habitAdded(2L);
+        eventService.habitDeleted(2L);
+        assertEquals(1, eventService.subscriberCount());
+
+        eventService.habitsChanged(List.of(1L));
+        assertEquals(0, eventService.subscriberCount());
+        assertEquals(1.0, meterRegistry.get("habit.events.evictions").counter().count());
+    }
+
+    // Test subscriptions beyond the limit are refused
+    @Test
+    void testSubscriberLimit() {
+        eventService.subscribe();
+        eventService.subscribe();
+
+        assertThrows(IllegalStateException.class, eventService::subscribe);
+    }
+}
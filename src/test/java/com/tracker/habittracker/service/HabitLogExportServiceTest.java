@@ -0,0 +1,85 @@
+package com.tracker.habittracker.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository.ExportRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class HabitLogExportServiceTest {
+
+    @Mock
+    private HabitLogJdbcRepository habitLogJdbcRepository;
+
+    private HabitLogExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        exportService = new HabitLogExportService(habitLogJdbcRepository, new ObjectMapper(),
+                mock(PlatformTransactionManager.class));
+        when(habitLogJdbcRepository.findLogsForExport(any(), any(), any(), isNull(), anyInt())).thenReturn(List.of(
+                new ExportRow(10L, 1L, "Coding", LocalDate.of(2025, 3, 1)),
+                new ExportRow(11L, 2L, "Read, \"slowly\"", LocalDate.of(2025, 3, 2))));
+    }
+
+    // Test NDJSON export writes one JSON object per line
+    @Test
+    void testExportNdjson() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(LogFileFormat.NDJSON, List.of(1L, 2L),
+                LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31), out);
+
+        assertEquals("{\"id\":10,\"habitId\":1,\"habitName\":\"Coding\",\"date\":\"2025-03-01\"}\n" +
+                        "{\"id\":11,\"habitId\":2,\"habitName\":\"Read, \\\"slowly\\\"\",\"date\":\"2025-03-02\"}\n",
+                out.toString(StandardCharsets.UTF_8));
+        verify(habitLogJdbcRepository).findLogsForExport(eq(List.of(1L, 2L)), eq(LocalDate.of(2025, 3, 1)),
+                eq(LocalDate.of(2025, 3, 31)), isNull(), eq(HabitLogExportService.CHUNK_SIZE));
+    }
+
+    // Test CSV export quotes fields containing separators
+    @Test
+    void testExportCsv() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(LogFileFormat.CSV, null, null, null, out);
+
+        assertEquals("id,habit_id,habit_name,date\n" +
+                        "10,1,Coding,2025-03-01\n" +
+                        "11,2,\"Read, \"\"slowly\"\"\",2025-03-02\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    // Test a full chunk is followed by one read after its last row, and a short chunk ends the export
+    @Test
+    void testExportReadsInChunks() throws Exception {
+        List<ExportRow> full = IntStream.range(0, HabitLogExportService.CHUNK_SIZE)
+                .mapToObj(i -> new ExportRow(i, 1L, "Coding", LocalDate.of(2025, 1, 1).plusDays(i)))
+                .toList();
+        ExportRow last = full.get(full.size() - 1);
+        when(habitLogJdbcRepository.findLogsForExport(any(), any(), any(), isNull(), anyInt())).thenReturn(full);
+        when(habitLogJdbcRepository.findLogsForExport(any(), any(), any(), eq(last), anyInt()))
+                .thenReturn(List.of(new ExportRow(5000L, 2L, "Gym", LocalDate.of(2025, 1, 1))));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(LogFileFormat.CSV, null, null, null, out);
+
+        assertEquals(HabitLogExportService.CHUNK_SIZE + 2, out.toString(StandardCharsets.UTF_8).split("\n").length);
+        verify(habitLogJdbcRepository, times(2)).findLogsForExport(any(), any(), any(), any(), anyInt());
+    }
+}
@@ -0,0 +1,155 @@
+package com.tracker.habittracker.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tracker.habittracker.dto.ImportResult;
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.model.Habit;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository.LogRow;
+import com.tracker.habittracker.repository.HabitRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class HabitLogImportServiceTest {
+
+    @Mock
+    private HabitRepository habitRepository;
+
+    @Mock
+    private HabitLogJdbcRepository habitLogJdbcRepository;
+
+    @Mock
+    private CompletionIndex completionIndex;
+
+    @Mock
+    private StreakService streakService;
+
+    private HabitLogImportService importService;
+
+    private final List<LogRow> staged = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        importService = new HabitLogImportService(habitRepository, habitLogJdbcRepository, completionIndex,
+                streakService, new ObjectMapper(), new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new DataVersions(), mock(HabitEventService.class), mock(WriteBehindBuffer.class));
+
+        Habit daily = new Habit(1L, "Coding", "Practice coding daily", Frequency.DAILY);
+        Habit weekly = new Habit(2L, "Exercise", "Go to gym", Frequency.WEEKLY);
+        when(habitRepository.findAll()).thenReturn(Arrays.asList(daily, weekly));
+        doAnswer(invocation -> staged.addAll(invocation.getArgument(1)))
+                .when(habitLogJdbcRepository).stageImportRows(any(), anyList());
+    }
+
+    private static ByteArrayInputStream input(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Test CSV import resolves habits by id or name and dedupes by period
+    @Test
+    void testImportCsv() throws Exception {
+        when(habitLogJdbcRepository.mergeImportStaging(any())).thenReturn(2);
+
+        ImportResult result = importService.importLogs(LogFileFormat.CSV, input(
+                "habit,date\n" +
+                "1,2025-03-01\n" +
+                "coding,2025-03-01\n" +
+                "Exercise,2025-03-10\n" +
+                "2,2025-03-12\n" +
+                "\"Exercise\",2025-03-17\n" +
+                "Reading,2025-03-01\n" +
+                "1,not-a-date\n"));
+
+        assertEquals(List.of(
+                new LogRow(1L, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 1)),
+                new LogRow(2L, LocalDate.of(2025, 3, 10), LocalDate.of(2025, 3, 10)),
+                new LogRow(2L, LocalDate.of(2025, 3, 17), LocalDate.of(2025, 3, 17))), staged);
+        // One period already existed in the database
+        assertEquals(new ImportResult(2, 3, 2, List.of(
+                "line 7: unknown habit 'Reading'",
+                "line 8: invalid date 'not-a-date'")), result);
+        verify(completionIndex).evict(1L);
+        verify(streakService).evict(2L);
+    }
+
+    // Test NDJSON import accepts the export format
+    @Test
+    void testImportNdjson() throws Exception {
+        when(habitLogJdbcRepository.mergeImportStaging(any())).thenReturn(1);
+
+        ImportResult result = importService.importLogs(LogFileFormat.NDJSON, input(
+                "{\"id\":10,\"habitId\":1,\"habitName\":\"Coding\",\"date\":\"2025-03-01\"}\n" +
+                "\n" +
+                "{\"habit\":\"Coding\"}\n" +
+                "not json\n"));
+
+        assertEquals(1, staged.size());
+        assertEquals(new ImportResult(1, 0, 2, List.of(
+                "line 3: habit and date are required",
+                "line 4: malformed JSON")), result);
+    }
+
+    // Test nothing is merged when every row is rejected
+    @Test
+    void testImportNothingValid() throws Exception {
+        ImportResult result = importService.importLogs(LogFileFormat.CSV, input("Reading,2025-03-01\n"));
+
+        assertEquals(0, result.inserted());
+        assertEquals(1, result.rejected());
+        verify(habitLogJdbcRepository, never()).mergeImportStaging(any());
+        verifyNoInteractions(completionIndex, streakService);
+    }
+
+    // Test an upload that fails halfway is not merged and its staged chunks are removed
+    @Test
+    void testFailedUploadClearsStagedRows() {
+        StringBuilder rows = new StringBuilder();
+        for (int day = 0; day < 6000; day++) {
+            rows.append("1,").append(LocalDate.of(2000, 1, 1).plusDays(day)).append('\n');
+        }
+        InputStream failing = new SequenceInputStream(input(rows.toString()), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        });
+
+        assertThrows(IOException.class, () -> importService.importLogs(LogFileFormat.CSV, failing));
+
+        ArgumentCaptor<UUID> importId = ArgumentCaptor.forClass(UUID.class);
+        verify(habitLogJdbcRepository).stageImportRows(importId.capture(), anyList());
+        verify(habitLogJdbcRepository).deleteImportRows(importId.getValue());
+        verify(habitLogJdbcRepository, never()).mergeImportStaging(any());
+    }
+
+    // Test quoted CSV fields are unescaped
+    @Test
+    void testSplitCsvLine() {
+        assertEquals(List.of("11", "Read, \"slowly\"", "2025-03-02"),
+                HabitLogImportService.splitCsvLine("11,\"Read, \"\"slowly\"\"\",2025-03-02"));
+        assertNull(HabitLogImportService.splitCsvLine("1,\"open"));
+    }
+}
@@ -0,0 +1,218 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.dto.HabitLogResponse;
+import com.tracker.habittracker.dto.KeysetPage;
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.model.Habit;
+import com.tracker.habittracker.model.HabitLog;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository.UpsertResult;
+import com.tracker.habittracker.repository.HabitLogRepository;
+import com.tracker.habittracker.repository.HabitMonthlyRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDate;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class HabitLogServiceTest {
+
+    @Mock
+    private HabitLogRepository habitLogRepository;
+
+    @Mock
+    private HabitLogJdbcRepository habitLogJdbcRepository;
+
+    @Mock
+    private HabitMonthlyRollupRepository rollupRepository;
+
+    @Mock
+    private StreakService streakService;
+
+    @Mock
+    private WriteBehindBuffer writeBehindBuffer;
+
+    @Mock
+    private HabitEventService habitEventService;
+
+    private final DataVersions dataVersions = new DataVersions();
+
+    private HabitLogService habitLogService;
+
+    private Habit weekly;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        habitLogService = new HabitLogService(habitLogRepository, habitLogJdbcRepository, rollupRepository,
+                new CompletionIndex(habitLogRepository, DataSize.ofMegabytes(1)), streakService,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), writeBehindBuffer,
+                dataVersions, habitEventService);
+        weekly = new Habit(1L, "Exercise", "Go to gym", Frequency.WEEKLY);
+        when(habitLogJdbcRepository.insertIfAbsent(anyLong(), any(), any()))
+                .thenAnswer(inv -> new UpsertResult(10L, inv.getArgument(1), true));
+    }
+
+    // Test markHabitOnDate() is a single insert-if-absent keyed by the period
+    @Test
+    void testMarkIsSingleUpsert() {
+        HabitLog log = habitLogService.markHabitOnDate(weekly, LocalDate.of(2025, 3, 5));
+
+        assertEquals(10L, log.getId());
+        assertEquals(LocalDate.of(2025, 3, 3), log.getPeriodKey());
+        verify(habitLogJdbcRepository, times(1)).insertIfAbsent(1L, LocalDate.of(2025, 3, 5), LocalDate.of(2025, 3, 3));
+        verify(habitLogRepository, never()).findByHabitAndDateBetween(any(), any(), any());
+        verify(habitLogRepository, never()).save(any(HabitLog.class));
+        verify(streakService, times(1)).recordMark(1L, Frequency.WEEKLY, LocalDate.of(2025, 3, 5));
+        verify(rollupRepository, times(1)).addCompletions(1L, 2025, 3, 1);
+    }
+
+    // Test markHabitOnDate() returns the existing log of an already completed period
+    @Test
+    void testMarkSamePeriodReturnsExisting() {
+        when(habitLogJdbcRepository.insertIfAbsent(1L, LocalDate.of(2025, 3, 8), LocalDate.of(2025, 3, 3)))
+                .thenReturn(new UpsertResult(7L, LocalDate.of(2025, 3, 4), false));
+
+        HabitLog result = habitLogService.markHabitOnDate(weekly, LocalDate.of(2025, 3, 8));
+
+        assertEquals(7L, result.getId());
+        assertEquals(LocalDate.of(2025, 3, 4), result.getDate());
+        verifyNoInteractions(streakService);
+        verifyNoInteractions(rollupRepository);
+    }
+
+    // Test unmarkHabitOnDate() deletes a completion the index does not know of, e.g. written by another instance
+    @Test
+    void testUnmarkDeletesCompletionMissingFromIndex() {
+        when(habitLogRepository.findDatesByHabitId(1L)).thenReturn(Collections.emptyList());
+        when(habitLogJdbcRepository.deletePeriod(1L, LocalDate.of(2025, 3, 3), LocalDate.of(2025, 3, 9)))
+                .thenReturn(java.util.List.of(LocalDate.of(2025, 3, 4)));
+
+        habitLogService.unmarkHabitOnDate(weekly, LocalDate.of(2025, 3, 6));
+
+        verify(rollupRepository).addCompletions(1L, 2025, 3, -1);
+        verify(streakService).recordUnmark(1L, Frequency.WEEKLY, LocalDate.of(2025, 3, 6));
+    }
+
+    // Test unmark after mark deletes the whole period and updates the index
+    @Test
+    void testMarkThenUnmark() {
+        habitLogService.markHabitOnDate(weekly, LocalDate.of(2025, 3, 5));
+        // The index is warmed lazily from the database, which now holds the log
+        when(habitLogRepository.findDatesByHabitId(1L)).thenReturn(java.util.List.of(LocalDate.of(2025, 3, 5)));
+        when(habitLogJdbcRepository.deletePeriod(1L, LocalDate.of(2025, 3, 3), LocalDate.of(2025, 3, 9)))
+                .thenReturn(java.util.List.of(LocalDate.of(2025, 3, 5)), java.util.List.of());
+
+        habitLogService.unmarkHabitOnDate(weekly, LocalDate.of(2025, 3, 3));
+        habitLogService.unmarkHabitOnDate(weekly, LocalDate.of(2025, 3, 3));
+
+        verify(habitLogJdbcRepository, times(2))
+                .deletePeriod(1L, LocalDate.of(2025, 3, 3), LocalDate.of(2025, 3, 9));
+        verify(rollupRepository, times(1)).addCompletions(1L, 2025, 3, -1);
+        verify(streakService, times(1)).recordUnmark(1L, Frequency.WEEKLY, LocalDate.of(2025, 3, 3));
+    }
+
+    // Test buffered writes only bump the version and notify when they change a period, with the stored date
+    @Test
+    void testWriteBehindNotifiesOnlyChanges() {
+        when(writeBehindBuffer.isEnabled()).thenReturn(true);
+        when(writeBehindBuffer.unmark(weekly, LocalDate.of(2025, 3, 7)))
+                .thenReturn(java.util.Optional.of(LocalDate.of(2025, 3, 4)));
+        long version = dataVersions.habit(1L);
+
+        habitLogService.unmarkHabitOnDate(weekly, LocalDate.of(2025, 3, 7));
+        long unmarked = dataVersions.habit(1L);
+        // Already completed per the buffer: nothing changes
+        habitLogService.markHabitOnDate(weekly, LocalDate.of(2025, 3, 12));
+        habitLogService.unmarkHabitOnDate(weekly, LocalDate.of(2025, 3, 20));
+
+        assertNotEquals(version, unmarked);
+        assertEquals(unmarked, dataVersions.habit(1L));
+        verify(habitEventService).completionChanged(weekly, LocalDate.of(2025, 3, 4), false);
+        verifyNoMoreInteractions(habitEventService);
+    }
+
+    // Test marks go to the write-behind buffer when enabled, and reads overlay its pending changes
+    @Test
+    void testWriteBehindMarkAndCalendarOverlay() {
+        when(writeBehindBuffer.isEnabled()).thenReturn(true);
+        when(writeBehindBuffer.mark(weekly, LocalDate.of(2025, 3, 12)))
+                .thenReturn(java.util.Optional.of(LocalDate.of(2025, 3, 12)));
+        when(habitLogRepository.findDatesByHabitIdBetween(1L, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31)))
+                .thenReturn(java.util.List.of(LocalDate.of(2025, 3, 4)));
+        when(writeBehindBuffer.changesBetween(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31)))
+                .thenReturn(java.util.List.of(
+                        new WriteBehindBuffer.Change(weekly, LocalDate.of(2025, 3, 4), false),
+                        new WriteBehindBuffer.Change(weekly, LocalDate.of(2025, 3, 12), true)));
+
+        HabitLog log = habitLogService.markHabitOnDate(weekly, LocalDate.of(2025, 3, 12));
+        var calendar = habitLogService.getCalendar(weekly, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31));
+
+        assertEquals(LocalDate.of(2025, 3, 12), log.getDate());
+        verify(writeBehindBuffer).mark(weekly, LocalDate.of(2025, 3, 12));
+        verifyNoInteractions(habitLogJdbcRepository);
+        assertFalse(calendar.isMarked(LocalDate.of(2025, 3, 4)));
+        assertTrue(calendar.isMarked(LocalDate.of(2025, 3, 12)));
+        assertEquals(1, calendar.getCompletions());
+    }
+
+    // Test getHabitLogs() seeks from the (date, id) cursor and only returns a next cursor when more logs follow
+    @Test
+    void testGetHabitLogsKeysetPages() {
+        LocalDate start = LocalDate.of(2025, 3, 1);
+        LocalDate end = LocalDate.of(2025, 3, 31);
+        HabitLogResponse first = new HabitLogResponse(5L, LocalDate.of(2025, 3, 4));
+        HabitLogResponse second = new HabitLogResponse(9L, LocalDate.of(2025, 3, 11));
+        when(habitLogRepository.findPage(weekly.getId(), start, end, Limit.of(2)))
+                .thenReturn(java.util.List.of(first, second));
+        when(habitLogRepository.findPageAfter(weekly.getId(), LocalDate.of(2025, 3, 4), 5L, end, Limit.of(2)))
+                .thenReturn(java.util.List.of(second));
+
+        KeysetPage<HabitLogResponse> page = habitLogService.getHabitLogs(weekly, start, end, null, 1);
+        KeysetPage<HabitLogResponse> next = habitLogService.getHabitLogs(weekly, start, end, page.nextCursor(), 1);
+
+        assertEquals(java.util.List.of(first), page.items());
+        assertEquals("2025-03-04_5", page.nextCursor());
+        assertEquals(java.util.List.of(second), next.items());
+        assertNull(next.nextCursor());
+        assertThrows(IllegalArgumentException.class,
+                () -> habitLogService.getHabitLogs(weekly, start, end, "2025-03-04", 1));
+    }
+
+    // Test buffered changes are merged before the page is cut, and a page may end on a buffered mark
+    @Test
+    void testGetHabitLogsMergesBufferBeforeLimit() {
+        LocalDate start = LocalDate.of(2025, 3, 1);
+        LocalDate end = LocalDate.of(2025, 3, 31);
+        HabitLogResponse first = new HabitLogResponse(5L, LocalDate.of(2025, 3, 4));
+        HabitLogResponse unmarked = new HabitLogResponse(6L, LocalDate.of(2025, 3, 11));
+        HabitLogResponse third = new HabitLogResponse(7L, LocalDate.of(2025, 3, 25));
+        when(writeBehindBuffer.isEnabled()).thenReturn(true);
+        when(writeBehindBuffer.changesBetween(start, end)).thenReturn(java.util.List.of(
+                new WriteBehindBuffer.Change(weekly, LocalDate.of(2025, 3, 11), false),
+                new WriteBehindBuffer.Change(weekly, LocalDate.of(2025, 3, 19), true)));
+        when(habitLogRepository.findPage(weekly.getId(), start, end, Limit.of(4)))
+                .thenReturn(java.util.List.of(first, unmarked, third));
+        when(habitLogRepository.findPageAfter(weekly.getId(), LocalDate.of(2025, 3, 19), Long.MAX_VALUE, end,
+                Limit.of(4))).thenReturn(java.util.List.of(third));
+
+        KeysetPage<HabitLogResponse> page = habitLogService.getHabitLogs(weekly, start, end, null, 2);
+        KeysetPage<HabitLogResponse> next = habitLogService.getHabitLogs(weekly, start, end, page.nextCursor(), 2);
+
+        assertEquals(java.util.List.of(first, new HabitLogResponse(null, LocalDate.of(2025, 3, 19))), page.items());
+        assertEquals("2025-03-19_" + Long.MAX_VALUE, page.nextCursor());
+        assertEquals(java.util.List.of(third), next.items());
+        assertNull(next.nextCursor());
+    }
+}
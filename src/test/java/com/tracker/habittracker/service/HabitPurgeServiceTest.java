@@ -0,0 +1,81 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.repository.HabitJdbcRepository;
+import com.tracker.habittracker.repository.HabitJdbcRepository.DeletedHabit;
+import com.tracker.habittracker.repository.HabitLogJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class HabitPurgeServiceTest {
+
+    @Mock
+    private HabitJdbcRepository habitJdbcRepository;
+
+    @Mock
+    private HabitLogJdbcRepository habitLogJdbcRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private HabitPurgeService purgeService;
+
+    private final DeletedHabit deleted = new DeletedHabit(7L, "Reading", Instant.parse("2025-03-01T10:00:00Z"));
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        purgeService = new HabitPurgeService(habitJdbcRepository, habitLogJdbcRepository,
+                new TransactionTemplate(transactionManager), new SimpleMeterRegistry(), 100);
+    }
+
+    // Test purge() deletes chunks until one comes back short, then removes the habit
+    @Test
+    void testPurgeDeletesInChunks() {
+        when(habitLogJdbcRepository.deleteLogsOfHabit(7L, 100)).thenReturn(100, 100, 42);
+
+        assertEquals(242, purgeService.purge(deleted));
+
+        InOrder inOrder = inOrder(habitLogJdbcRepository, habitJdbcRepository);
+        inOrder.verify(habitLogJdbcRepository, times(3)).deleteLogsOfHabit(7L, 100);
+        inOrder.verify(habitJdbcRepository).deletePurged(7L);
+    }
+
+    // Test a failed purge leaves the habit for the next run and the others are still purged
+    @Test
+    void testFailedPurgeIsRetried() {
+        DeletedHabit other = new DeletedHabit(8L, "Running", Instant.parse("2025-03-02T10:00:00Z"));
+        when(habitJdbcRepository.findDeleted()).thenReturn(List.of(deleted, other));
+        when(habitLogJdbcRepository.deleteLogsOfHabit(7L, 100)).thenThrow(new IllegalStateException("database down"));
+        when(habitLogJdbcRepository.deleteLogsOfHabit(8L, 100)).thenReturn(3);
+
+        purgeService.purgeDeletedHabits();
+
+        verify(habitJdbcRepository, never()).deletePurged(7L);
+        verify(habitJdbcRepository).deletePurged(8L);
+    }
+
+    // Test pending() reports the logs each deleted habit still has
+    @Test
+    void testPendingReportsRemainingLogs() {
+        when(habitJdbcRepository.findDeleted()).thenReturn(List.of(deleted));
+        when(habitLogJdbcRepository.countLogsOfHabit(7L)).thenReturn(1500L);
+
+        List<HabitPurgeService.PurgeStatus> pending = purgeService.pending();
+
+        assertEquals(List.of(new HabitPurgeService.PurgeStatus(7L, "Reading", deleted.deletedAt(), 1500L)), pending);
+    }
+}
@@ -0,0 +1,123 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.config.CacheConfig;
+import com.tracker.habittracker.dto.CreateHabitRequest;
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.model.Habit;
+import com.tracker.habittracker.repository.HabitMonthlyRollupRepository;
+import com.tracker.habittracker.repository.HabitRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig
+@Import({CacheConfig.class, HabitService.class})
+class HabitServiceCachingTest {
+
+    @MockBean
+    private HabitRepository habitRepository;
+
+    @MockBean
+    private HabitMonthlyRollupRepository rollupRepository;
+
+    @MockBean
+    private CompletionIndex completionIndex;
+
+    @MockBean
+    private StreakService streakService;
+
+    @MockBean
+    private WriteBehindBuffer writeBehindBuffer;
+
+    @MockBean
+    private DataVersions dataVersions;
+
+    @MockBean
+    private HabitEventService habitEventService;
+
+    @Autowired
+    private HabitService habitService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private final Habit habit = new Habit(1L, "Coding", "Practice coding daily", Frequency.DAILY);
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        when(habitRepository.findById(1L)).thenReturn(Optional.of(habit));
+        when(habitRepository.findAll()).thenReturn(List.of(habit));
+    }
+
+    // Test repeated lookups are served from the cache
+    @Test
+    void testLookupsAreCached() {
+        habitService.getHabitById(1L);
+        habitService.getHabitById(1L);
+        habitService.getAllHabits();
+        habitService.getAllHabits();
+
+        verify(habitRepository, times(1)).findById(1L);
+        verify(habitRepository, times(1)).findAll();
+    }
+
+    // Test addHabit() only invalidates the all-habits snapshot
+    @Test
+    void testAddHabitEvictsSnapshot() {
+        when(habitRepository.save(any(Habit.class))).thenAnswer(inv -> inv.getArgument(0));
+        habitService.getHabitById(1L);
+        habitService.getAllHabits();
+
+        CreateHabitRequest request = new CreateHabitRequest();
+        request.name = "Reading";
+        request.frequency = "daily";
+        habitService.addHabit(request);
+        habitService.getHabitById(1L);
+        habitService.getAllHabits();
+
+        verify(habitRepository, times(1)).findById(1L);
+        verify(habitRepository, times(2)).findAll();
+    }
+
+    // Test deleteHabit() evicts the deleted habit and the snapshot
+    @Test
+    void testDeleteHabitEvicts() {
+        habitService.getHabitById(1L);
+        habitService.getAllHabits();
+
+        habitService.deleteHabit(1L);
+
+        assertNull(cacheManager.getCache(CacheConfig.HABITS_BY_ID).get(1L));
+        assertNull(cacheManager.getCache(CacheConfig.ALL_HABITS).get("all"));
+    }
+
+    // Test deleteHabit() inside a transaction keeps the cached entries until the commit
+    @Test
+    void testDeleteHabitEvictsAfterCommit() {
+        habitService.getHabitById(1L);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            habitService.deleteHabit(1L);
+            assertNotNull(cacheManager.getCache(CacheConfig.HABITS_BY_ID).get(1L));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertNull(cacheManager.getCache(CacheConfig.HABITS_BY_ID).get(1L));
+    }
+}
@@ -1,6 +1,8 @@
 package com.tracker.habittracker.service;
 
 import com.tracker.habittracker.dto.CreateHabitRequest;
+import com.tracker.habittracker.dto.HabitSummary;
+import com.tracker.habittracker.dto.KeysetPage;
 import com.tracker.habittracker.model.Habit;
 import com.tracker.habittracker.model.Frequency;
 import com.tracker.habittracker.repository.HabitRepository;
@@ -9,6 +11,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -23,7 +26,22 @@ class HabitServiceTest {
     private HabitRepository habitRepository;
 
     @Mock
-    private com.tracker.habittracker.repository.HabitLogRepository habitLogRepository;
+    private com.tracker.habittracker.repository.HabitMonthlyRollupRepository rollupRepository;
+
+    @Mock
+    private CompletionIndex completionIndex;
+
+    @Mock
+    private StreakService streakService;
+
+    @Mock
+    private WriteBehindBuffer writeBehindBuffer;
+
+    @Mock
+    private DataVersions dataVersions;
+
+    @Mock
+    private HabitEventService habitEventService;
 
     @InjectMocks
     private HabitService habitService;
@@ -59,6 +77,23 @@ class HabitServiceTest {
         assertTrue(habits.isEmpty());
     }
 
+    // Test getHabitPage() seeks past the cursor and reports the next one only when more habits follow
+    @Test
+    void testGetHabitPage() {
+        HabitSummary habit2 = new HabitSummary(2L, "Exercise", "Go to gym", Frequency.WEEKLY);
+        HabitSummary habit3 = new HabitSummary(3L, "Reading", "Read books daily", Frequency.DAILY);
+        when(habitRepository.findSummariesAfter(1L, Limit.of(2))).thenReturn(Arrays.asList(habit2, habit3));
+        when(habitRepository.findSummariesAfter(2L, Limit.of(2))).thenReturn(List.of(habit3));
+
+        KeysetPage<HabitSummary> first = habitService.getHabitPage(1L, 1);
+        KeysetPage<HabitSummary> last = habitService.getHabitPage(2L, 1);
+
+        assertEquals(List.of(habit2), first.items());
+        assertEquals("2", first.nextCursor());
+        assertEquals(List.of(habit3), last.items());
+        assertNull(last.nextCursor());
+    }
+
     // Test addHabit() functionality
     @Test
     void testAddHabit() {
@@ -90,13 +125,15 @@ class HabitServiceTest {
         Habit habit = new Habit(habitId, "Test Habit", "Test Description", Frequency.DAILY);
 
         when(habitRepository.findById(habitId)).thenReturn(java.util.Optional.of(habit));
-        doNothing().when(habitLogRepository).deleteByHabit(habit);
-        doNothing().when(habitRepository).delete(habit);
 
         habitService.deleteHabit(habitId);
 
         verify(habitRepository, times(1)).findById(habitId);
-        verify(habitLogRepository, times(1)).deleteByHabit(habit);
-        verify(habitRepository, times(1)).delete(habit);
+        verify(habitRepository, times(1)).markDeleted(eq(habitId), any(java.time.Instant.class));
+        verify(rollupRepository, times(1)).deleteByHabitId(habitId);
+        verify(habitRepository, never()).delete(any());
+        verify(completionIndex, times(1)).evict(habitId);
+        verify(streakService, times(1)).evict(habitId);
+        verify(writeBehindBuffer, times(1)).discard(habitId);
     }
 }
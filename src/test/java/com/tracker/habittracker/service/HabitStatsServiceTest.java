@@ -0,0 +1,124 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.repository.HabitCompletionCount;
+import com.tracker.habittracker.repository.HabitCompletionTotal;
+import com.tracker.habittracker.repository.HabitLogRepository;
+import com.tracker.habittracker.repository.HabitMonthlyRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class HabitStatsServiceTest {
+
+    @Mock
+    private HabitLogRepository habitLogRepository;
+
+    @Mock
+    private HabitMonthlyRollupRepository rollupRepository;
+
+    @Mock
+    private StreakService streakService;
+
+    @Mock
+    private WriteBehindBuffer writeBehindBuffer;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private HabitStatsService habitStatsService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    private record Count(Long habitId, String name, Frequency frequency, long completions) implements HabitCompletionCount {
+        public Long getHabitId() { return habitId; }
+        public String getName() { return name; }
+        public Frequency getFrequency() { return frequency; }
+        public long getCompletions() { return completions; }
+    }
+
+    private static HabitCompletionCount count(long id, String name, Frequency frequency, long completions) {
+        return new Count(id, name, frequency, completions);
+    }
+
+    private record Total(Long habitId, long completions) implements HabitCompletionTotal {
+        public Long getHabitId() { return habitId; }
+        public long getCompletions() { return completions; }
+    }
+
+    // Test getMonthlyStats() reads the monthly rollup instead of the raw logs
+    @Test
+    void testGetMonthlyStats() {
+        when(rollupRepository.findMonthlyCompletions(2025, 2)).thenReturn(Arrays.asList(
+                count(1L, "Coding", Frequency.DAILY, 20),
+                count(2L, "Exercise", Frequency.WEEKLY, 0)));
+
+        Map<String, Integer> stats = habitStatsService.getMonthlyStats(2025, 2);
+
+        assertEquals(20, stats.get("Coding"));
+        assertEquals(0, stats.get("Exercise"));
+        verifyNoInteractions(habitLogRepository);
+    }
+
+    // Test getRangeStats() combines partial edge months from the logs with whole months from the rollup
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetRangeStatsAcrossMonths() {
+        LocalDate start = LocalDate.of(2025, 1, 15);
+        LocalDate end = LocalDate.of(2025, 4, 10);
+        when(habitLogRepository.countCompletionsBetween(start, LocalDate.of(2025, 1, 31))).thenReturn(Arrays.asList(
+                count(1L, "Coding", Frequency.DAILY, 10)));
+        when(habitLogRepository.sumCompletionsBetween(LocalDate.of(2025, 4, 1), end)).thenReturn(Arrays.asList(
+                new Total(1L, 5)));
+        when(rollupRepository.sumCompletionsBetweenMonths(2025, 2, 2025, 3)).thenReturn(Arrays.asList(
+                new Total(1L, 40)));
+
+        Map<String, Object> result = habitStatsService.getRangeStats(start, end);
+
+        Map<String, Object> coding = (Map<String, Object>) result.get("Coding");
+        assertEquals(55, coding.get("completions"));
+        assertEquals(86L, coding.get("possible"));
+    }
+
+    // Test getRangeStats() computes the frequency-aware denominator
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetRangeStats() {
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        LocalDate end = LocalDate.of(2025, 1, 14);
+        when(habitLogRepository.countCompletionsBetween(start, end)).thenReturn(Arrays.asList(
+                count(1L, "Coding", Frequency.DAILY, 7),
+                count(2L, "Exercise", Frequency.WEEKLY, 1),
+                count(3L, "Budget", Frequency.MONTHLY, 1)));
+
+        Map<String, Object> result = habitStatsService.getRangeStats(start, end);
+
+        Map<String, Object> coding = (Map<String, Object>) result.get("Coding");
+        assertEquals(7, coding.get("completions"));
+        assertEquals(14L, coding.get("possible"));
+        assertEquals(0.5, (double) coding.get("rate"), 1e-9);
+
+        Map<String, Object> exercise = (Map<String, Object>) result.get("Exercise");
+        assertEquals(2L, exercise.get("possible"));
+
+        assertEquals(0, coding.get("currentStreak"));
+
+        Map<String, Object> budget = (Map<String, Object>) result.get("Budget");
+        assertEquals(1L, budget.get("possible"));
+        assertEquals(1.0, (double) budget.get("rate"), 1e-9);
+    }
+}
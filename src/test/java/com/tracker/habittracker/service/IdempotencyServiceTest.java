@@ -0,0 +1,58 @@
+package com.tracker.habittracker.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyServiceTest {
+
+    private IdempotencyService idempotencyService;
+    private AtomicInteger runs;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(new InMemoryIdempotencyStore(100, Duration.ofHours(1)),
+                new SimpleMeterRegistry());
+        runs = new AtomicInteger();
+    }
+
+    // Test requests without a key always run and repeats of a keyed request are replayed
+    @Test
+    void testRunsOncePerKey() {
+        assertEquals(IdempotencyService.Outcome.EXECUTED, idempotencyService.run("client", null, "mark 1", runs::incrementAndGet));
+        assertEquals(IdempotencyService.Outcome.EXECUTED, idempotencyService.run("client", null, "mark 1", runs::incrementAndGet));
+        assertEquals(IdempotencyService.Outcome.EXECUTED, idempotencyService.run("client", "k", "mark 1", runs::incrementAndGet));
+        assertEquals(IdempotencyService.Outcome.REPLAYED, idempotencyService.run("client", "k", "mark 1", runs::incrementAndGet));
+        assertEquals(IdempotencyService.Outcome.MISMATCH, idempotencyService.run("client", "k", "mark 2", runs::incrementAndGet));
+        assertEquals(3, runs.get());
+    }
+
+    // Test the same key from another client is a separate request
+    @Test
+    void testKeysAreScopedToClient() {
+        assertEquals(IdempotencyService.Outcome.EXECUTED, idempotencyService.run("a", "k", "mark 1", runs::incrementAndGet));
+        assertEquals(IdempotencyService.Outcome.EXECUTED, idempotencyService.run("b", "k", "mark 2", runs::incrementAndGet));
+        assertEquals(IdempotencyService.Outcome.REPLAYED, idempotencyService.run("b", "k", "mark 2", runs::incrementAndGet));
+        assertEquals(2, runs.get());
+    }
+
+    // Test a failed request releases its key and a repeat while it runs is told it is in progress
+    @Test
+    void testFailureReleasesKey() {
+        assertThrows(IllegalStateException.class, () -> idempotencyService.run("client", "k", "mark 1", () -> {
+            throw new IllegalStateException("database down");
+        }));
+        AtomicReference<IdempotencyService.Outcome> nested = new AtomicReference<>();
+
+        assertEquals(IdempotencyService.Outcome.EXECUTED, idempotencyService.run("client", "k", "mark 1",
+                () -> nested.set(idempotencyService.run("client", "k", "mark 1", runs::incrementAndGet))));
+        assertEquals(IdempotencyService.Outcome.IN_PROGRESS, nested.get());
+        assertEquals(0, runs.get());
+    }
+}
@@ -0,0 +1,149 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.repository.HabitLogDate;
+import com.tracker.habittracker.repository.HabitLogRepository;
+import com.tracker.habittracker.service.StreakService.Streak;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class StreakServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 20);
+
+    @Mock
+    private HabitLogRepository habitLogRepository;
+
+    private StreakService streakService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        streakService = new StreakService(habitLogRepository, 100);
+    }
+
+    private record LogDate(Long habitId, LocalDate date) implements HabitLogDate {
+        public Long getHabitId() { return habitId; }
+        public LocalDate getDate() { return date; }
+    }
+
+    private void givenLogs(Long habitId, String... dates) {
+        when(habitLogRepository.findDatesByHabitIds(anyCollection())).thenReturn(
+                Arrays.stream(dates).map(d -> (HabitLogDate) new LogDate(habitId, LocalDate.parse(d))).toList());
+    }
+
+    private Streak streak(Long habitId, Frequency frequency) {
+        return streakService.getStreaks(Map.of(habitId, frequency), TODAY).get(habitId);
+    }
+
+    // Test a rebuild from history finds the current and longest runs
+    @Test
+    void testRebuildDaily() {
+        givenLogs(1L, "2025-03-01", "2025-03-02", "2025-03-03", "2025-03-04", "2025-03-18", "2025-03-19");
+
+        assertEquals(new Streak(2, 4), streak(1L, Frequency.DAILY));
+    }
+
+    // Test the streak is no longer current once a whole period was skipped
+    @Test
+    void testBrokenStreakIsNotCurrent() {
+        givenLogs(1L, "2025-03-16", "2025-03-17", "2025-03-18");
+
+        assertEquals(new Streak(0, 3), streak(1L, Frequency.DAILY));
+    }
+
+    // Test weekly streaks count ISO weeks, whatever day of the week was marked
+    @Test
+    void testWeeklyStreak() {
+        givenLogs(2L, "2025-02-28", "2025-03-03", "2025-03-16", "2025-03-17");
+
+        assertEquals(new Streak(4, 4), streak(2L, Frequency.WEEKLY));
+    }
+
+    // Test marks extending the latest run update the state without another query
+    @Test
+    void testRecordMarkExtendsRun() {
+        givenLogs(1L, "2025-03-17", "2025-03-18");
+        streak(1L, Frequency.DAILY);
+
+        streakService.recordMark(1L, Frequency.DAILY, LocalDate.of(2025, 3, 19));
+        streakService.recordMark(1L, Frequency.DAILY, LocalDate.of(2025, 3, 20));
+
+        assertEquals(new Streak(4, 4), streak(1L, Frequency.DAILY));
+        verify(habitLogRepository, times(1)).findDatesByHabitIds(anyCollection());
+    }
+
+    // Test an unmark inside a run shorter than the longest one is applied in place
+    @Test
+    void testRecordUnmarkShortensTail() {
+        givenLogs(1L, "2025-03-01", "2025-03-02", "2025-03-03", "2025-03-04", "2025-03-18", "2025-03-19", "2025-03-20");
+        streak(1L, Frequency.DAILY);
+
+        streakService.recordUnmark(1L, Frequency.DAILY, LocalDate.of(2025, 3, 19));
+
+        assertEquals(new Streak(1, 4), streak(1L, Frequency.DAILY));
+        verify(habitLogRepository, times(1)).findDatesByHabitIds(anyCollection());
+    }
+
+    // Test an unmark that may shorten the longest run forces a rebuild
+    @Test
+    void testRecordUnmarkOfLongestRunRebuilds() {
+        givenLogs(1L, "2025-03-18", "2025-03-19", "2025-03-20");
+        streak(1L, Frequency.DAILY);
+
+        streakService.recordUnmark(1L, Frequency.DAILY, LocalDate.of(2025, 3, 19));
+        givenLogs(1L, "2025-03-18", "2025-03-20");
+
+        assertEquals(new Streak(1, 1), streak(1L, Frequency.DAILY));
+        verify(habitLogRepository, times(2)).findDatesByHabitIds(anyCollection());
+    }
+
+    // Test monthly period indexes are consecutive across a year boundary
+    @Test
+    void testMonthlyAcrossYears() {
+        givenLogs(3L, "2024-12-15", "2025-01-31", "2025-02-01", "2025-03-05");
+
+        assertEquals(new Streak(4, 4), streak(3L, Frequency.MONTHLY));
+    }
+
+    // Test a write during a rebuild keeps it from being cached, even when a second rebuild starts meanwhile
+    @Test
+    void testRacingRebuildsDoNotCacheStaleState() throws Exception {
+        CountDownLatch secondQuerying = new CountDownLatch(1);
+        CountDownLatch firstDone = new CountDownLatch(1);
+        List<HabitLogDate> before = List.of(new LogDate(1L, LocalDate.parse("2025-03-19")));
+        List<HabitLogDate> after = List.of(new LogDate(1L, LocalDate.parse("2025-03-19")),
+                new LogDate(1L, LocalDate.parse("2025-03-20")));
+        AtomicReference<Thread> second = new AtomicReference<>();
+        when(habitLogRepository.findDatesByHabitIds(anyCollection())).thenAnswer(inv -> {
+            streakService.recordMark(1L, Frequency.DAILY, LocalDate.of(2025, 3, 20));
+            second.set(new Thread(() -> streak(1L, Frequency.DAILY)));
+            second.get().start();
+            secondQuerying.await();
+            return before;
+        }).thenAnswer(inv -> {
+            secondQuerying.countDown();
+            firstDone.await();
+            return after;
+        }).thenReturn(after);
+
+        streak(1L, Frequency.DAILY);
+        firstDone.countDown();
+        second.get().join();
+
+        assertEquals(new Streak(2, 2), streak(1L, Frequency.DAILY));
+    }
+}
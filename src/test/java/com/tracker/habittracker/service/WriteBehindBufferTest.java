@@ -0,0 +1,180 @@
+package com.tracker.habittracker.service;
+
+import com.tracker.habittracker.dto.BulkMarkRequest;
+import com.tracker.habittracker.dto.BulkMarkResult;
+import com.tracker.habittracker.model.Frequency;
+import com.tracker.habittracker.model.Habit;
+import com.tracker.habittracker.repository.HabitLogRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.util.unit.DataSize;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class WriteBehindBufferTest {
+
+    @Mock
+    private BulkMarkService bulkMarkService;
+
+    @Mock
+    private HabitLogRepository habitLogRepository;
+
+    @Mock
+    private StreakService streakService;
+
+    private WriteBehindBuffer buffer;
+
+    private Habit daily;
+    private Habit weekly;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        buffer = new WriteBehindBuffer(true, 100, bulkMarkService, new CompletionIndex(habitLogRepository, DataSize.ofMegabytes(1)),
+                streakService, habitLogRepository, new SimpleMeterRegistry());
+        daily = new Habit(1L, "Coding", "Practice coding daily", Frequency.DAILY);
+        weekly = new Habit(2L, "Exercise", "Go to gym", Frequency.WEEKLY);
+        when(habitLogRepository.findDatesByHabitId(1L)).thenReturn(Collections.emptyList());
+        when(habitLogRepository.findDatesByHabitId(2L)).thenReturn(List.of(LocalDate.of(2025, 3, 4)));
+        when(bulkMarkService.write(anyList(), any())).thenAnswer(inv -> {
+            List<BulkMarkRequest.Operation> ops = inv.getArgument(0);
+            ((Runnable) inv.getArgument(1)).run();
+            return ops.stream()
+                    .map(op -> BulkMarkResult.of(0, op, op.action.equals("mark") ? "marked" : "unmarked"))
+                    .toList();
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<BulkMarkRequest.Operation> flushedOperations() {
+        ArgumentCaptor<List<BulkMarkRequest.Operation>> captor = ArgumentCaptor.forClass(List.class);
+        verify(bulkMarkService).write(captor.capture(), any());
+        return captor.getValue();
+    }
+
+    // Test toggles of the same period cancel out and nothing is written
+    @Test
+    void testTogglesCoalesce() {
+        buffer.mark(daily, LocalDate.of(2025, 3, 1));
+        buffer.unmark(daily, LocalDate.of(2025, 3, 1));
+        buffer.mark(daily, LocalDate.of(2025, 3, 1));
+        buffer.mark(daily, LocalDate.of(2025, 3, 1));
+        buffer.unmark(daily, LocalDate.of(2025, 3, 1));
+
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.flush());
+        verifyNoInteractions(bulkMarkService);
+    }
+
+    // Test flush() writes one net operation per period through the bulk path
+    @Test
+    void testFlushWritesNetChanges() {
+        buffer.mark(daily, LocalDate.of(2025, 3, 1));
+        buffer.mark(daily, LocalDate.of(2025, 3, 1));
+        buffer.mark(daily, LocalDate.of(2025, 3, 2));
+
+        assertEquals(2, buffer.flush());
+        List<BulkMarkRequest.Operation> ops = flushedOperations();
+        assertEquals(2, ops.size());
+        assertEquals("2025-03-01", ops.get(0).date);
+        assertEquals("mark", ops.get(0).action);
+        assertEquals(0, buffer.size());
+        verify(streakService, times(2)).recordMark(eq(1L), eq(Frequency.DAILY), any());
+    }
+
+    // Test unmarking a completed period deletes by the date it was completed on
+    @Test
+    void testUnmarkUsesStoredDate() {
+        when(habitLogRepository.findDatesByHabitIdBetween(2L, LocalDate.of(2025, 3, 3), LocalDate.of(2025, 3, 9)))
+                .thenReturn(List.of(LocalDate.of(2025, 3, 4)));
+
+        buffer.unmark(weekly, LocalDate.of(2025, 3, 7));
+        List<WriteBehindBuffer.Change> changes = buffer.changesBetween(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31));
+
+        assertEquals(List.of(new WriteBehindBuffer.Change(weekly, LocalDate.of(2025, 3, 4), false)), changes);
+        // Marking again restores the stored completion instead of adding one
+        buffer.mark(weekly, LocalDate.of(2025, 3, 8));
+        assertEquals(0, buffer.size());
+        verify(streakService).recordMark(2L, Frequency.WEEKLY, LocalDate.of(2025, 3, 4));
+    }
+
+    // Test unmarking a period that is not completed buffers nothing
+    @Test
+    void testUnmarkUncompletedIsNoop() {
+        assertEquals(Optional.empty(), buffer.unmark(daily, LocalDate.of(2025, 3, 1)));
+
+        assertEquals(0, buffer.size());
+    }
+
+    // Test an unmark is buffered for a completion the index does not know of, e.g. written by another instance
+    @Test
+    void testUnmarkCompletionMissingFromIndex() {
+        when(habitLogRepository.findDatesByHabitIdBetween(1L, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 1)))
+                .thenReturn(List.of(LocalDate.of(2025, 3, 1)));
+
+        assertEquals(Optional.of(LocalDate.of(2025, 3, 1)), buffer.unmark(daily, LocalDate.of(2025, 3, 1)));
+        assertEquals(1, buffer.size());
+    }
+
+    // Test a failed flush keeps its changes for the next one
+    @Test
+    void testFailedFlushIsRetried() {
+        buffer.mark(daily, LocalDate.of(2025, 3, 1));
+        doThrow(new IllegalStateException("database down")).when(bulkMarkService).write(anyList(), any());
+
+        assertEquals(0, buffer.flush());
+        assertEquals(1, buffer.size());
+        assertEquals(1, buffer.changesBetween(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 1)).size());
+    }
+
+    // Test mark/unmark report the date of the completion they changed, and nothing when they change none
+    @Test
+    void testReturnsChangedCompletion() {
+        when(habitLogRepository.findDatesByHabitIdBetween(eq(2L), any(), any()))
+                .thenReturn(List.of(LocalDate.of(2025, 3, 4)));
+
+        assertEquals(Optional.empty(), buffer.mark(weekly, LocalDate.of(2025, 3, 6)));
+        assertEquals(Optional.of(LocalDate.of(2025, 3, 4)), buffer.unmark(weekly, LocalDate.of(2025, 3, 7)));
+        assertEquals(Optional.empty(), buffer.unmark(weekly, LocalDate.of(2025, 3, 7)));
+        assertTrue(buffer.hasChanges(List.of(2L)));
+        assertFalse(buffer.hasChanges(List.of(1L)));
+        assertEquals(Optional.of(LocalDate.of(2025, 3, 4)), buffer.mark(weekly, LocalDate.of(2025, 3, 6)));
+        assertFalse(buffer.hasChanges(List.of(2L)));
+    }
+
+    // Test changesBetween() only returns changes dated in the range
+    @Test
+    void testChangesBetweenFiltersByDate() {
+        buffer.mark(daily, LocalDate.of(2025, 3, 1));
+        buffer.mark(daily, LocalDate.of(2025, 4, 1));
+
+        List<WriteBehindBuffer.Change> changes = buffer.changesBetween(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31));
+
+        assertEquals(List.of(new WriteBehindBuffer.Change(daily, LocalDate.of(2025, 3, 1), true)), changes);
+    }
+
+    // Test discard() drops only the pending changes of the deleted habit
+    @Test
+    void testDiscardDropsHabitChanges() {
+        buffer.mark(daily, LocalDate.of(2025, 3, 1));
+        buffer.mark(weekly, LocalDate.of(2025, 3, 10));
+
+        buffer.discard(1L);
+
+        assertEquals(1, buffer.size());
+        assertEquals(List.of(new WriteBehindBuffer.Change(weekly, LocalDate.of(2025, 3, 10), true)),
+                buffer.changesBetween(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31)));
+    }
+}